@@ -3,6 +3,8 @@ package com.tsulok.qrcodereader;
 import android.app.Application;
 import android.content.Context;
 
+import com.tsulok.qrcodereader.helper.StartupHelper;
+
 public class App extends Application{
 
     private static Context appContext;
@@ -11,6 +13,7 @@ public class App extends Application{
     public void onCreate() {
         super.onCreate();
         appContext = this.getApplicationContext();
+        StartupHelper.onLaunch();
     }
 
     public static Context getAppContext() {
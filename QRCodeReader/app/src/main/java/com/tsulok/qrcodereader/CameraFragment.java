@@ -12,11 +12,20 @@ import android.widget.TextView;
 import com.tsulok.qrcodereader.common.NamedFragment;
 import com.tsulok.qrcodereader.helper.CameraHelper;
 import com.tsulok.qrcodereader.helper.UIHelper;
+import com.tsulok.qrcodereader.scan.DecodedSymbol;
+import com.tsulok.qrcodereader.scan.ParsedPayload;
+import com.tsulok.qrcodereader.scan.ScanProfile;
 import com.tsulok.qrcodereader.utils.AutoFitTextureView;
 
 import java.util.ArrayList;
+import java.util.List;
 
-public class CameraFragment extends NamedFragment implements IQRFound, ISettingsLoaded{
+public class CameraFragment extends NamedFragment implements IQRFound, IQRBatchFound, ISettingsLoaded{
+
+    /**
+     * Refresh interval of the scan metrics overlay of debug builds
+     */
+    private static final long METRICS_REFRESH_MS = 500;
 
     private CameraHelper cameraHelper;
 
@@ -29,9 +38,12 @@ public class CameraFragment extends NamedFragment implements IQRFound, ISettings
 
     private MenuItem switchMenu;
     private MenuItem switchModeMenu;
+    private MenuItem scanProfileMenu;
+    private MenuItem zeroShutterLagMenu;
     private AutoFitTextureView mTextureView;
     private ImageButton captureBtn;
     private TextView qrLastTxt;
+    private TextView metricsOverlayTxt;
     private View photoSettingsView;
 
     // Iso settings
@@ -64,6 +76,10 @@ public class CameraFragment extends NamedFragment implements IQRFound, ISettings
         super.onCreate(savedInstanceState);
         getActivity().getWindow().addFlags(WindowManager.LayoutParams.FLAG_KEEP_SCREEN_ON);
         setHasOptionsMenu(true);
+        // The camera opens while the views are inflated
+        cameraHelper = new CameraHelper(getActivity(), this, this);
+        cameraHelper.setBatchFoundListener(this);
+        cameraHelper.handleOnCreate();
     }
 
     @Override
@@ -71,6 +87,17 @@ public class CameraFragment extends NamedFragment implements IQRFound, ISettings
         inflater.inflate(R.menu.menu_camera, menu);
         switchMenu = menu.findItem(R.id.action_mode_switch);
         switchModeMenu = menu.findItem(R.id.action_mode_manual_switch);
+        scanProfileMenu = menu.findItem(R.id.action_scan_profile);
+        zeroShutterLagMenu = menu.findItem(R.id.action_zero_shutter_lag);
+        zeroShutterLagMenu.setChecked(cameraHelper.isZeroShutterLag());
+    }
+
+    @Override
+    public void onPrepareOptionsMenu(Menu menu) {
+        super.onPrepareOptionsMenu(menu);
+        // The camera may not support zero shutter lag, or have turned it off meanwhile
+        zeroShutterLagMenu.setVisible(isPhotoMode && cameraHelper.isZeroShutterLagSupported());
+        zeroShutterLagMenu.setChecked(cameraHelper.isZeroShutterLag());
     }
 
     @Override
@@ -84,6 +111,13 @@ public class CameraFragment extends NamedFragment implements IQRFound, ISettings
                  isAutomaticMode = !isAutomaticMode;
                 changeAutomaticMode();
                 return true;
+            case R.id.action_scan_profile:
+                switchScanProfile();
+                return true;
+            case R.id.action_zero_shutter_lag:
+                item.setChecked(!item.isChecked());
+                cameraHelper.setZeroShutterLag(item.isChecked());
+                return true;
             default:
                 return onOptionsItemSelected(item);
         }
@@ -94,6 +128,7 @@ public class CameraFragment extends NamedFragment implements IQRFound, ISettings
         mTextureView = (AutoFitTextureView) v.findViewById(R.id.texture);
         captureBtn = (ImageButton) v.findViewById(R.id.capture);
         qrLastTxt = (TextView) v.findViewById(R.id.qr_data);
+        metricsOverlayTxt = (TextView) v.findViewById(R.id.metrics_overlay);
         photoSettingsView = v.findViewById(R.id.photoSettings);
 
         isoSettingsContainer = v.findViewById(R.id.isoSettings);
@@ -112,7 +147,7 @@ public class CameraFragment extends NamedFragment implements IQRFound, ISettings
 
     @Override
     public void initObjects(View v) {
-        cameraHelper = new CameraHelper(getActivity(), mTextureView, this, this);
+        cameraHelper.attachTextureView(mTextureView);
         isoSeparatorTxt.setText("ISO ");
     }
 
@@ -124,6 +159,13 @@ public class CameraFragment extends NamedFragment implements IQRFound, ISettings
                 cameraHelper.takePicture();
             }
         });
+        captureBtn.setOnLongClickListener(new View.OnLongClickListener() {
+            @Override
+            public boolean onLongClick(View v) {
+                cameraHelper.takeBurst();
+                return true;
+            }
+        });
 
         prevIsoValueBtn.setOnClickListener(new SettingsIsoChangeOnClick());
         nextIsoValueBtn.setOnClickListener(new SettingsIsoChangeOnClick());
@@ -135,10 +177,12 @@ public class CameraFragment extends NamedFragment implements IQRFound, ISettings
     public void onResume() {
         super.onResume();
         cameraHelper.handleOnResume();
+        updateMetricsOverlay();
     }
 
     @Override
     public void onPause() {
+        metricsOverlayTxt.removeCallbacks(metricsRefresher);
         cameraHelper.handleOnPause();
         super.onPause();
 
@@ -146,6 +190,7 @@ public class CameraFragment extends NamedFragment implements IQRFound, ISettings
 
     @Override
     public void onDestroy() {
+        cameraHelper.handleOnDestroy();
         super.onDestroy();
         getActivity().getWindow().clearFlags(WindowManager.LayoutParams.FLAG_KEEP_SCREEN_ON);
     }
@@ -156,6 +201,8 @@ public class CameraFragment extends NamedFragment implements IQRFound, ISettings
     private void changeCameraMode(){
         switchMenu.setIcon(isPhotoMode ? R.drawable.icon_qr : R.drawable.icon_material_camera);
         switchModeMenu.setVisible(isPhotoMode);
+        scanProfileMenu.setVisible(!isPhotoMode);
+        zeroShutterLagMenu.setVisible(isPhotoMode && cameraHelper.isZeroShutterLagSupported());
         UIHelper.makeToast(isPhotoMode ? R.string.mode_photo : R.string.mode_qr);
         cameraHelper.changeMode(isPhotoMode);
 
@@ -165,8 +212,29 @@ public class CameraFragment extends NamedFragment implements IQRFound, ISettings
 
         qrLastTxt.setVisibility(isPhotoMode ? View.GONE : View.VISIBLE);
         photoSettingsView.setVisibility(isPhotoMode ? View.VISIBLE : View.GONE);
+        updateMetricsOverlay();
     }
 
+    /**
+     * Shows the scan metrics over the preview in QR mode of debug builds
+     */
+    private void updateMetricsOverlay(){
+        metricsOverlayTxt.removeCallbacks(metricsRefresher);
+        boolean visible = BuildConfig.DEBUG && !isPhotoMode;
+        metricsOverlayTxt.setVisibility(visible ? View.VISIBLE : View.GONE);
+        if(visible){
+            metricsRefresher.run();
+        }
+    }
+
+    private final Runnable metricsRefresher = new Runnable() {
+        @Override
+        public void run() {
+            metricsOverlayTxt.setText(cameraHelper.getScanMetrics().format());
+            metricsOverlayTxt.postDelayed(this, METRICS_REFRESH_MS);
+        }
+    };
+
     private void changeAutomaticMode(){
         switchModeMenu.setIcon(isAutomaticMode ? R.drawable.icon_manual : R.drawable.icon_automatic);
         UIHelper.makeToast(isAutomaticMode ? R.string.mode_automatic : R.string.mode_manual);
@@ -180,11 +248,47 @@ public class CameraFragment extends NamedFragment implements IQRFound, ISettings
         }
     }
 
+    /**
+     * Steps to the next scan profile, the camera session keeps running
+     */
+    private void switchScanProfile(){
+        ScanProfile[] profiles = ScanProfile.values();
+        ScanProfile next = profiles[(cameraHelper.getScanProfile().ordinal() + 1) % profiles.length];
+        cameraHelper.setScanProfile(next);
+        UIHelper.makeToast(getProfileNameId(next));
+    }
+
+    private static int getProfileNameId(ScanProfile profile){
+        switch (profile){
+            case RETAIL_1D:
+                return R.string.profile_retail_1d;
+            case EVERYTHING:
+                return R.string.profile_everything;
+            default:
+                return R.string.profile_qr_only;
+        }
+    }
+
     @Override
     public void onFound(String data) {
         qrLastTxt.setText(data);
     }
 
+    /**
+     * Shows every new code of the frame, one per line
+     */
+    @Override
+    public void onBatchFound(List<DecodedSymbol> symbols, List<ParsedPayload> payloads) {
+        StringBuilder text = new StringBuilder();
+        for (ParsedPayload payload : payloads) {
+            if (text.length() > 0) {
+                text.append('\n');
+            }
+            text.append(payload.getDisplayText());
+        }
+        qrLastTxt.setText(text);
+    }
+
     @Override
     public void onExposureTimeRangeLoaded(ArrayList<Integer> supportedExposures, int selectedPosition) {
         this.supportedExposureList = supportedExposures;
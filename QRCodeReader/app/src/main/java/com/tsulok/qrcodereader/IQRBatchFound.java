@@ -0,0 +1,17 @@
+package com.tsulok.qrcodereader;
+
+import com.tsulok.qrcodereader.scan.DecodedSymbol;
+import com.tsulok.qrcodereader.scan.ParsedPayload;
+
+import java.util.List;
+
+public interface IQRBatchFound {
+
+    /**
+     * Called on the main thread with every new code of a decoded frame, at most once per display frame.
+     * Only the newest decoded frame is delivered.
+     * @param symbols The new codes with their bounds in analysis frame coordinates
+     * @param payloads The typed content of each code, in the same order
+     */
+    public void onBatchFound(List<DecodedSymbol> symbols, List<ParsedPayload> payloads);
+}
@@ -3,7 +3,7 @@ package com.tsulok.qrcodereader;
 public interface IQRFound {
 
     /**
-     * Called when a new QR code is found
+     * Called on the main thread when a new QR code is found, at most once per display frame
      * @param data which found
      */
     public void onFound(String data);
@@ -0,0 +1,114 @@
+package com.tsulok.qrcodereader.helper;
+
+import java.util.Locale;
+
+/**
+ * Measures one burst: the sustained capture rate from the first to the last shutter,
+ * and the time from the shutter of each frame until it is on disk.
+ * Fed from the camera thread and the photo writer thread.
+ */
+public class BurstStats {
+
+    private final int frameCount;
+    private final long[] shutterTimes;
+    private final long[] shutterToDisk;
+
+    private int captured;
+    private int saved;
+    private int measured;
+    private int lost;
+    private long firstShutter;
+    private long lastShutter;
+
+    /**
+     * @param frameCount The number of frames requested
+     */
+    public BurstStats(int frameCount) {
+        this.frameCount = frameCount;
+        this.shutterTimes = new long[frameCount];
+        this.shutterToDisk = new long[frameCount];
+    }
+
+    /**
+     * The exposure of a frame started
+     * @param shutterTime The {@link System#nanoTime} of the shutter
+     */
+    public synchronized void onShutter(long shutterTime) {
+        if (captured == 0) {
+            firstShutter = shutterTime;
+        }
+        lastShutter = shutterTime;
+        if (captured < shutterTimes.length) {
+            shutterTimes[captured] = shutterTime;
+        }
+        captured++;
+    }
+
+    /**
+     * Whether a photo with this shutter time was captured by this burst
+     */
+    public synchronized boolean isFrameOf(long shutterTime) {
+        for (int i = 0; i < Math.min(captured, shutterTimes.length); i++) {
+            if (shutterTimes[i] == shutterTime) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * A frame is on disk
+     * @return Whether every frame is done now
+     */
+    public synchronized boolean onSaved(long shutterTime) {
+        if (shutterTime > 0 && measured < shutterToDisk.length) {
+            shutterToDisk[measured++] = System.nanoTime() - shutterTime;
+        }
+        saved++;
+        return isFinished();
+    }
+
+    /**
+     * A frame failed, or was dropped before it was written
+     * @return Whether every frame is done now
+     */
+    public synchronized boolean onLost() {
+        lost++;
+        return isFinished();
+    }
+
+    public synchronized boolean isFinished() {
+        return saved + lost >= frameCount;
+    }
+
+    /**
+     * @return The frames captured per second between the first and the last shutter
+     */
+    public synchronized double getFramesPerSecond() {
+        if (captured < 2 || lastShutter == firstShutter) {
+            return 0;
+        }
+        return (captured - 1) * 1e9 / (lastShutter - firstShutter);
+    }
+
+    /**
+     * A one line summary: saved frames, capture rate and shutter to disk latencies in ms
+     */
+    public synchronized String format() {
+        long total = 0;
+        long max = 0;
+        long min = Long.MAX_VALUE;
+        for (int i = 0; i < measured; i++) {
+            total += shutterToDisk[i];
+            max = Math.max(max, shutterToDisk[i]);
+            min = Math.min(min, shutterToDisk[i]);
+        }
+        if (measured == 0) {
+            min = 0;
+        }
+        return String.format(Locale.US,
+                "Burst: %d/%d saved, %.1f fps, shutter to disk min %.0f mean %.0f max %.0f ms",
+                saved, frameCount, getFramesPerSecond(), min / 1e6,
+                measured > 0 ? total / 1e6 / measured : 0, max / 1e6);
+    }
+}
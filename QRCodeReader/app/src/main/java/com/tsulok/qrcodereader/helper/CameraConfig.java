@@ -0,0 +1,154 @@
+package com.tsulok.qrcodereader.helper;
+
+import android.graphics.ImageFormat;
+import android.graphics.SurfaceTexture;
+import android.hardware.camera2.CameraCharacteristics;
+import android.hardware.camera2.params.StreamConfigurationMap;
+import android.util.Range;
+import android.util.Size;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * Everything {@code CameraHelper} needs from the characteristics of the back camera.
+ * The values only change with the device and its OS build, see {@link CameraConfigCache}.
+ */
+public class CameraConfig {
+
+    private static final int DEFAULT_SENSOR_ORIENTATION = 90;
+
+    /**
+     * {@code INFO_SUPPORTED_HARDWARE_LEVEL_3}, added after the SDK the app is compiled with
+     */
+    private static final int HARDWARE_LEVEL_3 = 3;
+
+    private final String cameraId;
+    private final int sensorOrientation;
+    private final Size jpegSize;
+    private final Size[] previewSizes;
+    private final Size[] yuvSizes;
+    private final ArrayList<Integer> isoValues;
+    private final ArrayList<Integer> exposureTimes;
+    private final int hardwareLevel;
+
+    public CameraConfig(String cameraId, int sensorOrientation, Size jpegSize, Size[] previewSizes,
+                        Size[] yuvSizes, ArrayList<Integer> isoValues, ArrayList<Integer> exposureTimes,
+                        int hardwareLevel) {
+        this.cameraId = cameraId;
+        this.sensorOrientation = sensorOrientation;
+        this.jpegSize = jpegSize;
+        this.previewSizes = previewSizes;
+        this.yuvSizes = yuvSizes;
+        this.isoValues = isoValues;
+        this.exposureTimes = exposureTimes;
+        this.hardwareLevel = hardwareLevel;
+    }
+
+    /**
+     * Reads the configuration of a camera
+     * @param cameraId The ID of the camera
+     * @param characteristics The characteristics of the camera
+     * @return The configuration, or null if the camera has no stream configuration or JPEG output
+     */
+    public static CameraConfig fromCharacteristics(String cameraId, CameraCharacteristics characteristics) {
+        Integer sensorRotation = characteristics.get(CameraCharacteristics.SENSOR_ORIENTATION);
+        Integer hardwareLevel = characteristics.get(CameraCharacteristics.INFO_SUPPORTED_HARDWARE_LEVEL);
+        StreamConfigurationMap map = characteristics.get(
+                CameraCharacteristics.SCALER_STREAM_CONFIGURATION_MAP);
+        if (map == null) {
+            return null;
+        }
+        Size[] jpegSizes = map.getOutputSizes(ImageFormat.JPEG);
+        if (jpegSizes == null || jpegSizes.length == 0) {
+            return null;
+        }
+
+        // For still image captures, we use the largest available size.
+        Size largest = Collections.max(Arrays.asList(jpegSizes), new CameraHelper.CompareSizesByArea());
+
+        return new CameraConfig(cameraId,
+                sensorRotation != null ? sensorRotation : DEFAULT_SENSOR_ORIENTATION,
+                largest,
+                map.getOutputSizes(SurfaceTexture.class),
+                map.getOutputSizes(ImageFormat.YUV_420_888),
+                supportedIsoValues(characteristics),
+                supportedExposureTimes(characteristics),
+                hardwareLevel != null ? hardwareLevel
+                        : CameraCharacteristics.INFO_SUPPORTED_HARDWARE_LEVEL_LEGACY);
+    }
+
+    public String getCameraId() {
+        return cameraId;
+    }
+
+    public int getSensorOrientation() {
+        return sensorOrientation;
+    }
+
+    public Size getJpegSize() {
+        return jpegSize;
+    }
+
+    public Size[] getPreviewSizes() {
+        return previewSizes;
+    }
+
+    public Size[] getYuvSizes() {
+        return yuvSizes;
+    }
+
+    /**
+     * The well known ISO values the sensor supports
+     */
+    public ArrayList<Integer> getIsoValues() {
+        return new ArrayList<>(isoValues);
+    }
+
+    /**
+     * The well known exposure times the sensor supports, as 1/n seconds
+     */
+    public ArrayList<Integer> getExposureTimes() {
+        return new ArrayList<>(exposureTimes);
+    }
+
+    /**
+     * The {@code INFO_SUPPORTED_HARDWARE_LEVEL} of the camera
+     */
+    public int getHardwareLevel() {
+        return hardwareLevel;
+    }
+
+    /**
+     * Preview, analysis and a full size YUV stream together are only guaranteed from the FULL level on,
+     * LIMITED and LEGACY devices may fail to configure the zero shutter lag session
+     */
+    public boolean supportsZeroShutterLag() {
+        return hardwareLevel == CameraCharacteristics.INFO_SUPPORTED_HARDWARE_LEVEL_FULL
+                || hardwareLevel == HARDWARE_LEVEL_3;
+    }
+
+    private static ArrayList<Integer> supportedIsoValues(CameraCharacteristics characteristics) {
+        Range<Integer> isoRange = characteristics.get(CameraCharacteristics.SENSOR_INFO_SENSITIVITY_RANGE);
+        ArrayList<Integer> supportedIsoList = new ArrayList<>();
+        for (Integer validIsoRange : CameraConstants.validIsoRanges) {
+            if(isoRange.contains(validIsoRange)){
+                supportedIsoList.add(validIsoRange);
+            }
+        }
+        return supportedIsoList;
+    }
+
+    private static ArrayList<Integer> supportedExposureTimes(CameraCharacteristics characteristics) {
+        Range<Long> exposureRange = characteristics.get(CameraCharacteristics.SENSOR_INFO_EXPOSURE_TIME_RANGE);
+        ArrayList<Integer> supportedExposureList = new ArrayList<>();
+        for (Integer validExposureTime : CameraConstants.validExposureTimes) {
+            long expTimeInNanos = CameraConstants.SEC_IN_NANO / validExposureTime;
+            if(exposureRange.contains(expTimeInNanos)){
+                supportedExposureList.add(validExposureTime);
+            }
+        }
+        return supportedExposureList;
+    }
+}
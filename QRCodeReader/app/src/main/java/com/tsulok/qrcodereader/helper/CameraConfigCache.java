@@ -0,0 +1,195 @@
+package com.tsulok.qrcodereader.helper;
+
+import android.hardware.camera2.CameraAccessException;
+import android.hardware.camera2.CameraCharacteristics;
+import android.hardware.camera2.CameraManager;
+import android.os.Build;
+import android.util.Log;
+import android.util.Size;
+
+import com.tsulok.qrcodereader.App;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * Keeps the {@link CameraConfig} of the device in memory and on disk.
+ * Querying the characteristics of every camera is a binder call each, so it is done
+ * once per OS build: the stored configuration is dropped when {@link Build#FINGERPRINT} changes.
+ */
+public class CameraConfigCache {
+
+    private static final String TAG = "CameraConfigCache";
+
+    private static final String FILE_NAME = "camera_config.bin";
+
+    /**
+     * Stored files of other versions are ignored
+     */
+    private static final int FORMAT_VERSION = 2;
+
+    private static volatile CameraConfig config;
+
+    /**
+     * The configuration of the first back facing camera, from memory, disk or the camera service.
+     * @return The configuration, or null if there is no back facing camera
+     */
+    public static CameraConfig get(CameraManager cameraManager) throws CameraAccessException {
+        CameraConfig cached = config;
+        if (cached != null) {
+            return cached;
+        }
+        synchronized (CameraConfigCache.class) {
+            if (config == null) {
+                config = read();
+            }
+            if (config == null) {
+                config = query(cameraManager);
+                if (config != null) {
+                    write(config);
+                }
+            }
+            return config;
+        }
+    }
+
+    /**
+     * Drops the configuration, the next {@link #get} queries the camera service again
+     */
+    public static synchronized void invalidate() {
+        config = null;
+        if (!getFile().delete()) {
+            Log.d(TAG, "No stored camera config to delete");
+        }
+    }
+
+    private static CameraConfig query(CameraManager cameraManager) throws CameraAccessException {
+        for (String cameraId : cameraManager.getCameraIdList()) {
+            CameraCharacteristics characteristics
+                    = cameraManager.getCameraCharacteristics(cameraId);
+
+            // Don't use a front facing camera.
+            if (characteristics.get(CameraCharacteristics.LENS_FACING)
+                    == CameraCharacteristics.LENS_FACING_FRONT) {
+                continue;
+            }
+            return CameraConfig.fromCharacteristics(cameraId, characteristics);
+        }
+        return null;
+    }
+
+    private static CameraConfig read() {
+        File file = getFile();
+        if (!file.exists()) {
+            return null;
+        }
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (in.readInt() != FORMAT_VERSION || !Build.FINGERPRINT.equals(in.readUTF())) {
+                return null;
+            }
+            String cameraId = in.readUTF();
+            int sensorOrientation = in.readInt();
+            Size jpegSize = new Size(in.readInt(), in.readInt());
+            Size[] previewSizes = readSizes(in);
+            Size[] yuvSizes = readSizes(in);
+            ArrayList<Integer> isoValues = readInts(in);
+            ArrayList<Integer> exposureTimes = readInts(in);
+            int hardwareLevel = in.readInt();
+            return new CameraConfig(cameraId, sensorOrientation, jpegSize, previewSizes, yuvSizes,
+                    isoValues, exposureTimes, hardwareLevel);
+        } catch (IOException e) {
+            Log.w(TAG, "Stored camera config is unreadable", e);
+            return null;
+        } finally {
+            close(in);
+        }
+    }
+
+    /**
+     * Writes into a temporary file first, so a crash never leaves a half written config
+     */
+    private static void write(CameraConfig config) {
+        File file = getFile();
+        File temp = new File(file.getPath() + ".tmp");
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+            out.writeInt(FORMAT_VERSION);
+            out.writeUTF(Build.FINGERPRINT);
+            out.writeUTF(config.getCameraId());
+            out.writeInt(config.getSensorOrientation());
+            out.writeInt(config.getJpegSize().getWidth());
+            out.writeInt(config.getJpegSize().getHeight());
+            writeSizes(out, config.getPreviewSizes());
+            writeSizes(out, config.getYuvSizes());
+            writeInts(out, config.getIsoValues());
+            writeInts(out, config.getExposureTimes());
+            out.writeInt(config.getHardwareLevel());
+            out.close();
+            out = null;
+            if (!temp.renameTo(file)) {
+                Log.w(TAG, "Could not store the camera config");
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Could not store the camera config", e);
+        } finally {
+            close(out);
+        }
+    }
+
+    private static Size[] readSizes(DataInputStream in) throws IOException {
+        Size[] sizes = new Size[in.readInt()];
+        for (int i = 0; i < sizes.length; i++) {
+            sizes[i] = new Size(in.readInt(), in.readInt());
+        }
+        return sizes;
+    }
+
+    private static void writeSizes(DataOutputStream out, Size[] sizes) throws IOException {
+        out.writeInt(sizes.length);
+        for (Size size : sizes) {
+            out.writeInt(size.getWidth());
+            out.writeInt(size.getHeight());
+        }
+    }
+
+    private static ArrayList<Integer> readInts(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        ArrayList<Integer> values = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            values.add(in.readInt());
+        }
+        return values;
+    }
+
+    private static void writeInts(DataOutputStream out, ArrayList<Integer> values) throws IOException {
+        out.writeInt(values.size());
+        for (Integer value : values) {
+            out.writeInt(value);
+        }
+    }
+
+    private static File getFile() {
+        return new File(App.getAppContext().getFilesDir(), FILE_NAME);
+    }
+
+    private static void close(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
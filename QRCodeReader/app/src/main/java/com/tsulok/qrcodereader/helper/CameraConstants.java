@@ -3,7 +3,6 @@ package com.tsulok.qrcodereader.helper;
 import android.util.SparseIntArray;
 import android.view.Surface;
 
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -15,8 +14,6 @@ public class CameraConstants {
 
     public static final long SEC_IN_NANO = 1000000000l;
 
-    public static SimpleDateFormat dateFormat = new SimpleDateFormat("yyyyMMdd_HHmmss");
-
     /**
      * Conversion from screen rotation to JPEG orientation.
      */
@@ -51,6 +48,110 @@ public class CameraConstants {
      */
     public static final int STATE_PICTURE_TAKEN = 4;
 
+    /**
+     * Every n-th preview frame is scanned completely, not only the viewfinder box
+     */
+    public static final int FULL_FRAME_SCAN_INTERVAL = 10;
+
+    /**
+     * Preview frames are scanned first downsampled by this factor, see {@code PyramidDecoder}
+     */
+    public static final int PYRAMID_FACTOR = 2;
+
+    /**
+     * A preview frame is decoded only if its sharpness reaches this fraction of the recent average
+     */
+    public static final float SHARPNESS_THRESHOLD_RATIO = 0.7f;
+
+    /**
+     * The sharpness skip rate is logged after this many frames
+     */
+    public static final int SHARPNESS_REPORT_INTERVAL = 300;
+
+    /**
+     * Mean luma difference of the scene signatures (0-255) which counts as a changed scene
+     */
+    public static final float SCENE_CHANGE_THRESHOLD = 6f;
+
+    /**
+     * A static scene is decoded again after this many skipped frames (about 3 seconds)
+     */
+    public static final int STATIC_SCENE_MAX_SKIPPED_FRAMES = 90;
+
+    /**
+     * A code is delivered again only after it was out of view for this long.
+     * Longer than the re-decode interval of a static scene.
+     */
+    public static final long RESULT_TTL_MS = 5000;
+
+    /**
+     * The number of recently delivered codes remembered for de-duplication
+     */
+    public static final int RESULT_CACHE_SIZE = 64;
+
+    /**
+     * The number of parsed payloads kept, a code coming back into view is not parsed again
+     */
+    public static final int PAYLOAD_CACHE_SIZE = 64;
+
+    /**
+     * A structured append sequence is dropped when no new part of it was seen for this long
+     */
+    public static final long STRUCTURED_APPEND_TTL_MS = 30000;
+
+    /**
+     * The number of structured append sequences collected at the same time
+     */
+    public static final int STRUCTURED_APPEND_MAX_SEQUENCES = 4;
+
+    /**
+     * A tracked code is lost after this many scans of its predicted window without a hit
+     */
+    public static final int TRACKING_MAX_MISSES = 3;
+
+    /**
+     * Scans of a tracked code without a hit before the analysis stream steps up to the next resolution,
+     * two lost tracks. Frames without a detected code never change the resolution.
+     */
+    public static final int ANALYSIS_FAILURES_BEFORE_UPGRADE = 2 * TRACKING_MAX_MISSES;
+
+    /**
+     * Captured photos which may wait for being saved, more are rejected until one is written.
+     * A whole burst fits, with room for one more photo.
+     */
+    public static final int PHOTO_WRITER_CAPACITY = 6;
+
+    /**
+     * Stills captured by one burst
+     */
+    public static final int BURST_FRAME_COUNT = 5;
+
+    /**
+     * JPEGs the reader holds at once. They are only copied before being closed,
+     * a few are enough to not stall a burst.
+     */
+    public static final int JPEG_READER_MAX_IMAGES = 4;
+
+    /**
+     * Memory the zero shutter lag frames may use by default, configurable in the settings
+     */
+    public static final int ZSL_DEFAULT_MEMORY_LIMIT_MB = 64;
+
+    /**
+     * Zero shutter lag needs at least this many frames, the resolution is lowered until they fit
+     */
+    public static final int ZSL_MIN_FRAMES = 2;
+
+    /**
+     * Zero shutter lag keeps at most this many frames, even if more would fit
+     */
+    public static final int ZSL_MAX_FRAMES = 8;
+
+    /**
+     * A zero shutter lag photo is the sharpest of this many frames up to the press
+     */
+    public static final int ZSL_SHARPEST_OF = 3;
+
     /**
      * Accepted and well known exposure times
      */
@@ -9,7 +9,6 @@ import android.graphics.RectF;
 import android.graphics.SurfaceTexture;
 import android.hardware.camera2.CameraAccessException;
 import android.hardware.camera2.CameraCaptureSession;
-import android.hardware.camera2.CameraCharacteristics;
 import android.hardware.camera2.CameraDevice;
 import android.hardware.camera2.CameraManager;
 import android.hardware.camera2.CameraMetadata;
@@ -17,39 +16,50 @@ import android.hardware.camera2.CaptureFailure;
 import android.hardware.camera2.CaptureRequest;
 import android.hardware.camera2.CaptureResult;
 import android.hardware.camera2.TotalCaptureResult;
-import android.hardware.camera2.params.StreamConfigurationMap;
 import android.media.Image;
 import android.media.ImageReader;
-import android.net.Uri;
 import android.os.Handler;
 import android.os.HandlerThread;
 import android.util.Log;
-import android.util.Range;
 import android.util.Size;
 import android.view.Surface;
 import android.view.TextureView;
 
 import com.tsulok.qrcodereader.App;
+import com.tsulok.qrcodereader.IQRBatchFound;
 import com.tsulok.qrcodereader.IQRFound;
 import com.tsulok.qrcodereader.ISettingsLoaded;
 import com.tsulok.qrcodereader.R;
+import com.tsulok.qrcodereader.scan.AnalysisSizePolicy;
+import com.tsulok.qrcodereader.scan.BarcodeEngine;
+import com.tsulok.qrcodereader.scan.DecodeExecutor;
+import com.tsulok.qrcodereader.scan.DecodedSymbol;
+import com.tsulok.qrcodereader.scan.IBarcodeEngineSource;
+import com.tsulok.qrcodereader.scan.IDecodeListener;
+import com.tsulok.qrcodereader.scan.IPayloadListener;
+import com.tsulok.qrcodereader.scan.LumaFrame;
+import com.tsulok.qrcodereader.scan.LumaPlane;
+import com.tsulok.qrcodereader.scan.ParsedPayload;
+import com.tsulok.qrcodereader.scan.PayloadProcessor;
+import com.tsulok.qrcodereader.scan.ResultDeduplicator;
+import com.tsulok.qrcodereader.scan.ScanMetrics;
+import com.tsulok.qrcodereader.scan.ScanProfile;
+import com.tsulok.qrcodereader.scan.ScanRegion;
+import com.tsulok.qrcodereader.scan.SceneChangeDetector;
+import com.tsulok.qrcodereader.scan.SharpnessGate;
+import com.tsulok.qrcodereader.scan.StructuredAppendAssembler;
+import com.tsulok.qrcodereader.scan.SymbolTracker;
 import com.tsulok.qrcodereader.utils.AutoFitTextureView;
 
-import net.sourceforge.zbar.Config;
-import net.sourceforge.zbar.ImageScanner;
-import net.sourceforge.zbar.Symbol;
-import net.sourceforge.zbar.SymbolSet;
-
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.nio.ByteBuffer;
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.Date;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 
@@ -66,13 +76,104 @@ public class CameraHelper {
 
     /**
      * QR Reader variables
+     * Preview frames are copied on the camera thread and decoded by the workers of
+     * #decodeExecutor, each worker has its own scanner.
+     */
+    private DecodeExecutor decodeExecutor;
+    private final LumaPlane lumaPlane = new LumaPlane();
+
+    /**
+     * Only the viewfinder part of the frame is scanned, see {@link #updateScanRegion}
+     */
+    private final ScanRegion scanRegion = new ScanRegion(CameraConstants.FULL_FRAME_SCAN_INTERVAL);
+    private float scanRegionFraction;
+
+    /**
+     * The symbologies, density and region of the scans, see {@link #setScanProfile}
+     */
+    private ScanProfile scanProfile;
+
+    /**
+     * While a code is tracked only the window around its predicted position is scanned
+     */
+    private final SymbolTracker symbolTracker = new SymbolTracker(CameraConstants.TRACKING_MAX_MISSES);
+    private final int[] trackedWindow = new int[4];
+
+    /**
+     * Frames blurred by motion or focus hunting are skipped before decoding
+     */
+    private final SharpnessGate sharpnessGate = new SharpnessGate(CameraConstants.SHARPNESS_THRESHOLD_RATIO);
+
+    /**
+     * A static scene is not decoded again until it changes
+     */
+    private final SceneChangeDetector sceneChangeDetector = new SceneChangeDetector(
+            CameraConstants.SCENE_CHANGE_THRESHOLD, CameraConstants.STATIC_SCENE_MAX_SKIPPED_FRAMES);
+
+    /**
+     * Only new or re-appeared codes are delivered to #resultDispatcher
+     */
+    private final ResultDeduplicator resultDeduplicator = new ResultDeduplicator(
+            CameraConstants.RESULT_TTL_MS, CameraConstants.RESULT_CACHE_SIZE);
+
+    /**
+     * Collects the parts of structured append codes, only the whole payload is delivered
+     */
+    private final StructuredAppendAssembler structuredAppendAssembler = new StructuredAppendAssembler(
+            CameraConstants.STRUCTURED_APPEND_TTL_MS, CameraConstants.STRUCTURED_APPEND_MAX_SEQUENCES);
+
+    /**
+     * Parses the new codes off the decode workers, the listeners are notified from its thread
      */
-    private ImageScanner imageScanner;
+    private final PayloadProcessor payloadProcessor = new PayloadProcessor(CameraConstants.PAYLOAD_CACHE_SIZE);
+    private final IPayloadListener payloadListener = new QRPayloadListener();
+
+    /**
+     * The analysis stream has its own, decode sized resolution, see {@link #resizeAnalysisStream}
+     */
+    private final AnalysisSizePolicy analysisSizePolicy =
+            new AnalysisSizePolicy(CameraConstants.ANALYSIS_FAILURES_BEFORE_UPGRADE);
+    private Size analysisSize;
+    /**
+     * The {@link AnalysisSizePolicy#getVersion} the analysis size was taken at
+     */
+    private volatile int analysisSizeVersion;
+    private boolean analysisResizePending;
+
+    /**
+     * Latencies and counters of the preview scanning, see {@link #getScanMetrics}
+     */
+    private final ScanMetrics scanMetrics = new ScanMetrics();
+    private volatile long lastFrameArrival;
+
+    /**
+     * Saves the captured photos off the camera thread
+     */
+    private final PhotoWriter photoWriter = new PhotoWriter(CameraConstants.PHOTO_WRITER_CAPACITY);
+
+    /**
+     * The {@link System#nanoTime} of the shutter of the still captures by their sensor timestamp,
+     * which is also the timestamp of their JPEG
+     */
+    private final Map<Long, Long> shutterTimes = new ConcurrentHashMap<>();
+
+    /**
+     * The running burst, see {@link #takeBurst}
+     */
+    private volatile BurstStats burstStats;
+
+    /**
+     * Zero shutter lag: the recent full resolution frames of photo mode, see {@link #setZeroShutterLag}
+     */
+    private volatile boolean zeroShutterLag;
+    private volatile boolean zeroShutterLagSupported;
+    private volatile ImageReader imageReaderZsl;
+    private volatile ZslRingBuffer zslRingBuffer;
 
     /**
      * Listeners
      */
-    private IQRFound qrFoundListener;
+    private final FrameResultDispatcher resultDispatcher;
     private ISettingsLoaded settingsLoadedListener;
     private MyStateCallback mStateCallback;
     private MySurfaceTextureListener surfaceTextureListener;
@@ -84,7 +185,6 @@ public class CameraHelper {
     private CaptureRequest.Builder previewRequestBuilder;
     private CaptureRequest previewRequest;
     private CameraCaptureSession captureSession;
-    private boolean previousImageParsed = true;
 
     /**
      * Manual settings data
@@ -103,11 +203,22 @@ public class CameraHelper {
      */
     private Semaphore cameraOpenCloseLock = new Semaphore(1);
 
+    /**
+     * Whether the camera should be open, cleared by {@link #closeCamera} before a pending open runs
+     */
+    private volatile boolean cameraOpenRequested;
+
+    /**
+     * Whether the outputs are set up for the preview surface, set on the background thread
+     */
+    private boolean outputsReady;
+
     /**
      * Reference & ID of the current CameraDevice.
      */
     private String mCameraId;
     private CameraDevice cameraDevice;
+    private int sensorOrientation;
 
     /**
      * The Size of camera preview.
@@ -126,32 +237,68 @@ public class CameraHelper {
     private ImageReader imageReaderJPEG;
     private ImageReader imageReaderPreviewYUV;
 
-    public CameraHelper(Activity hostActivity, AutoFitTextureView textureView,
+    public CameraHelper(Activity hostActivity,
                         IQRFound qrFoundListener, ISettingsLoaded settingsLoadedListener){
         this.cameraManager = (CameraManager) App.getAppContext().getSystemService(Context.CAMERA_SERVICE);
-        this.hostTextureView = textureView;
         this.hostActivity = hostActivity;
         this.mStateCallback = new MyStateCallback();
         this.surfaceTextureListener = new MySurfaceTextureListener();
         this.captureCallback = new MyCaptureCallback();
-        this.qrFoundListener = qrFoundListener;
+        this.resultDispatcher = new FrameResultDispatcher(qrFoundListener);
         this.settingsLoadedListener = settingsLoadedListener;
+        photoWriter.setListener(new PhotoSavedListener());
+        zeroShutterLag = SettingsHelper.isZeroShutterLagEnabled();
         initQrReader();
         hostActivity.setTitle(R.string.mode_photo);
     }
 
-    public void handleOnResume(){
+    /**
+     * Delivers the new codes of a frame in one call, instead of the newest one to {@link IQRFound#onFound}
+     * @param qrBatchFoundListener The listener, or null to deliver only the newest code again
+     */
+    public void setBatchFoundListener(IQRBatchFound qrBatchFoundListener) {
+        resultDispatcher.setBatchFoundListener(qrBatchFoundListener);
+    }
+
+    /**
+     * Sets the view of the preview, the preview starts once its surface is available
+     */
+    public void attachTextureView(AutoFitTextureView textureView){
+        this.hostTextureView = textureView;
+        hostTextureView.setSurfaceTextureListener(surfaceTextureListener);
+    }
+
+    /**
+     * Starts opening the camera, it does not need the preview surface
+     */
+    public void handleOnCreate(){
         startBackgroundThread();
+        openCamera();
+    }
+
+    public void handleOnResume(){
+        if(mBackgroundThread == null){
+            startBackgroundThread();
+            openCamera();
+        }
         if(hostTextureView.isAvailable()){
-            openCamera(hostTextureView.getWidth(), hostTextureView.getHeight());
-        } else {
-            hostTextureView.setSurfaceTextureListener(surfaceTextureListener);
+            onSurfaceReady(hostTextureView.getWidth(), hostTextureView.getHeight());
         }
     }
 
     public void handleOnPause(){
-        stopBackgroundThread();
+        backgroundHandler.removeCallbacks(openCameraTask);
         closeCamera();
+        stopBackgroundThread();
+    }
+
+    /**
+     * Finishes saving the taken photos in the background and stops delivering results
+     */
+    public void handleOnDestroy(){
+        photoWriter.shutdown();
+        payloadProcessor.shutdown();
+        resultDispatcher.release();
     }
 
     /**
@@ -219,28 +366,110 @@ public class CameraHelper {
      * Apply the appropriate camera mode
      */
     private void handleMode(){
+        if(!isPhotoModeEnabled){
+            sceneChangeDetector.reset();
+            symbolTracker.reset();
+            resultDeduplicator.clear();
+            structuredAppendAssembler.clear();
+            scanMetrics.reset();
+            lastFrameArrival = 0;
+        }
+        applyMode();
+        actualizeCaptureSession();
+    }
+
+    /**
+     * Sets the targets and the flash mode of the current camera mode on the preview request
+     */
+    private void applyMode(){
+        ImageReader zslReader = imageReaderZsl;
         if(!isPhotoModeEnabled){
             previewRequestBuilder.addTarget(imageReaderPreviewYUV.getSurface());
+            if(zslReader != null){
+                previewRequestBuilder.removeTarget(zslReader.getSurface());
+            }
             // Disable auto flash mode
             previewRequestBuilder.set(CaptureRequest.CONTROL_AE_MODE,
                     CaptureRequest.CONTROL_AE_MODE_ON);
         } else {
             previewRequestBuilder.removeTarget(imageReaderPreviewYUV.getSurface());
+            if(zslReader != null){
+                previewRequestBuilder.addTarget(zslReader.getSurface());
+            }
             // Set auto flash mode
             previewRequestBuilder.set(CaptureRequest.CONTROL_AE_MODE,
                     CaptureRequest.CONTROL_AE_MODE_ON_AUTO_FLASH);
         }
+    }
 
-        actualizeCaptureSession();
+    /**
+     * Sets the size of the centered viewfinder box which is scanned
+     * @param fraction The size relative to the view, 1 scans the whole frame
+     */
+    public void setScanRegionFraction(float fraction){
+        scanRegionFraction = Math.max(0.1f, Math.min(1f, fraction));
+        configureTransform(hostTextureView.getWidth(), hostTextureView.getHeight());
+    }
+
+    /**
+     * Switches the scan profile without restarting the camera session.
+     * The workers apply it from their next frame and the selection is persisted.
+     * Only a different analysis size for the expected codes recreates the session.
+     */
+    public void setScanProfile(ScanProfile profile){
+        scanProfile = profile;
+        decodeExecutor.setScanProfile(profile);
+        analysisSizePolicy.setScanProfile(profile);
+        symbolTracker.reset();
+        SettingsHelper.saveScanProfile(profile);
+        setScanRegionFraction(profile.getRegionFraction());
+    }
+
+    public ScanProfile getScanProfile(){
+        return scanProfile;
+    }
+
+    /**
+     * Per stage latencies and frame counters of the preview scanning
+     */
+    public ScanMetrics getScanMetrics(){
+        return scanMetrics;
+    }
+
+    /**
+     * The sharpness gate of the preview frames, exposes the skip rate for tuning
+     */
+    public SharpnessGate getSharpnessGate(){
+        return sharpnessGate;
+    }
+
+    /**
+     * The de-duplication cache in front of the found listener, exposes the hit and miss counters
+     */
+    public ResultDeduplicator getResultDeduplicator(){
+        return resultDeduplicator;
     }
 
     /**
      * Initialize qr reader
      */
     private void initQrReader(){
-        imageScanner = new ImageScanner();
-        imageScanner.setConfig(0, Config.X_DENSITY, 3);
-        imageScanner.setConfig(0, Config.Y_DENSITY, 3);
+        // The workers wait for the warm up, the main thread does not
+        IBarcodeEngineSource engineSource = new IBarcodeEngineSource() {
+            @Override
+            public BarcodeEngine getBarcodeEngine() {
+                BarcodeEngine engine = StartupHelper.getBarcodeEngine();
+                Log.i(TAG, "Decoding with " + engine);
+                return engine;
+            }
+        };
+        decodeExecutor = new DecodeExecutor(engineSource, DecodeExecutor.defaultWorkerCount(),
+                CameraConstants.PYRAMID_FACTOR, symbolTracker, scanMetrics, new QRDecodeListener());
+        scanProfile = SettingsHelper.getScanProfile();
+        scanRegionFraction = scanProfile.getRegionFraction();
+        decodeExecutor.setScanProfile(scanProfile);
+        analysisSizePolicy.setScanProfile(scanProfile);
+        decodeExecutor.setSizePolicy(analysisSizePolicy);
     }
 
     /**
@@ -255,88 +484,143 @@ public class CameraHelper {
      * @param height The height of available size for camera preview
      */
     private void setUpCameraOutputs(int width, int height) {
+        long start = System.nanoTime();
         try {
-            for (String cameraId : cameraManager.getCameraIdList()) {
-                CameraCharacteristics characteristics
-                        = cameraManager.getCameraCharacteristics(cameraId);
-
-                // Don't use a front facing camera.
-                if (characteristics.get(CameraCharacteristics.LENS_FACING)
-                        == CameraCharacteristics.LENS_FACING_FRONT) {
-                    continue;
-                }
-
-                // Get iso &  exp possibilities
-                parseCamerManualSettings(characteristics);
-
-                StreamConfigurationMap map = characteristics.get(
-                        CameraCharacteristics.SCALER_STREAM_CONFIGURATION_MAP);
+            CameraConfig config = CameraConfigCache.get(cameraManager);
+            if (config == null) {
+                alertNotSupported();
+                return;
+            }
 
-                // For still image captures, we use the largest available size.
-                Size largest = Collections.max(
-                        Arrays.asList(map.getOutputSizes(ImageFormat.JPEG)),
-                        new CompareSizesByArea());
+            // Get iso &  exp possibilities
+            notifyManualSettingsLoaded(config);
 
+            sensorOrientation = config.getSensorOrientation();
 
-                previewSize = CameraHelper.chooseOptimalSize(map.getOutputSizes(SurfaceTexture.class),
-                        width, height, largest);
+            // For still image captures, we use the largest available size.
+            Size largest = config.getJpegSize();
 
-                imageReaderPreviewYUV = ImageReader.newInstance(previewSize.getWidth(), previewSize.getHeight(),
-                        ImageFormat.YUV_420_888, /*maxImages*/1);
-                imageReaderPreviewYUV.setOnImageAvailableListener(
-                        new PreviewImageAvailableListener(), backgroundHandler);
+            previewSize = CameraHelper.chooseOptimalSize(config.getPreviewSizes(),
+                    width, height, largest);
 
-                imageReaderJPEG = ImageReader.newInstance(largest.getWidth(), largest.getHeight(),
-                        ImageFormat.JPEG, /*maxImages*/2);
-                imageReaderJPEG.setOnImageAvailableListener(
-                        new JPEGImageAvailableListener(), backgroundHandler);
+            // The frames to decode are sized for the codes, not for the screen
+            analysisSizePolicy.setSupportedSizes(toSizeList(config.getYuvSizes()),
+                    previewSize.getWidth(), previewSize.getHeight());
+            analysisSizeVersion = analysisSizePolicy.getVersion();
+            analysisSize = new Size(analysisSizePolicy.getWidth(), analysisSizePolicy.getHeight());
+            imageReaderPreviewYUV = createAnalysisReader(analysisSize);
+            decodeExecutor.start(analysisSize.getWidth() * analysisSize.getHeight());
 
-                // We fit the aspect ratio of TextureView to the size of preview we picked.
-                int orientation = App.getAppContext().getResources().getConfiguration().orientation;
-                if (orientation == Configuration.ORIENTATION_LANDSCAPE) {
-                    hostTextureView.setAspectRatio(
-                            previewSize.getWidth(), previewSize.getHeight());
-                } else {
-                    hostTextureView.setAspectRatio(
-                            previewSize.getHeight(), previewSize.getWidth());
-                }
+            imageReaderJPEG = ImageReader.newInstance(largest.getWidth(), largest.getHeight(),
+                    ImageFormat.JPEG, CameraConstants.JPEG_READER_MAX_IMAGES);
+            imageReaderJPEG.setOnImageAvailableListener(
+                    new JPEGImageAvailableListener(), backgroundHandler);
+            zeroShutterLagSupported = config.supportsZeroShutterLag();
+            if (zeroShutterLag && zeroShutterLagSupported) {
+                createZslReader(config.getYuvSizes(), largest);
+            }
 
-                mCameraId = cameraId;
-                return;
+            // We fit the aspect ratio of TextureView to the size of preview we picked.
+            int orientation = App.getAppContext().getResources().getConfiguration().orientation;
+            if (orientation == Configuration.ORIENTATION_LANDSCAPE) {
+                hostTextureView.setAspectRatio(
+                        previewSize.getWidth(), previewSize.getHeight());
+            } else {
+                hostTextureView.setAspectRatio(
+                        previewSize.getHeight(), previewSize.getWidth());
             }
+
+            Log.d(TAG, String.format(Locale.US, "Camera outputs set up in %.1f ms",
+                    (System.nanoTime() - start) / 1e6));
         } catch (CameraAccessException e) {
             e.printStackTrace();
         } catch (NullPointerException e) {
             // Camera2API is used but not supported on the device.
-            UIHelper.alert(hostActivity, "Error", "Device is not supported for Camera2API");
+            alertNotSupported();
         }
     }
 
     /**
-     * Parse camera settings
-     * @param characteristics of the actual camera
+     * Tells the user the device has no usable Camera2API camera, may be called on any thread
      */
-    private void parseCamerManualSettings(CameraCharacteristics characteristics){
-        Range<Integer> isoRange = characteristics.get(CameraCharacteristics.SENSOR_INFO_SENSITIVITY_RANGE);
-        Range<Long> exposureRange = characteristics.get(CameraCharacteristics.SENSOR_INFO_EXPOSURE_TIME_RANGE);
+    private void alertNotSupported() {
+        hostActivity.runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                UIHelper.alert(hostActivity, "Error", "Device is not supported for Camera2API");
+            }
+        });
+    }
 
-        ArrayList<Integer> supportedIsoList = new ArrayList<>();
-        ArrayList<Integer> supportedExposureList = new ArrayList<>();
+    /**
+     * Creates the reader of the frames to decode
+     */
+    private ImageReader createAnalysisReader(Size size) {
+        // Two images, so acquireLatestImage can skip the frames that arrived meanwhile
+        ImageReader reader = ImageReader.newInstance(size.getWidth(), size.getHeight(),
+                ImageFormat.YUV_420_888, /*maxImages*/2);
+        reader.setOnImageAvailableListener(new PreviewImageAvailableListener(), backgroundHandler);
+        return reader;
+    }
 
-        for (Integer validIsoRange : CameraConstants.validIsoRanges) {
-            if(isoRange.contains(validIsoRange)){
-                supportedIsoList.add(validIsoRange);
+    /**
+     * Switches the analysis stream to the size chosen by {@link #analysisSizePolicy}.
+     * Output sizes are fixed for a capture session, so the reader and the session are recreated,
+     * which pauses the preview briefly. The policy changes the size only a few times per session.
+     * Runs on {@link #backgroundHandler}.
+     */
+    private void resizeAnalysisStream() {
+        analysisResizePending = false;
+        try {
+            cameraOpenCloseLock.acquire();
+            // Taken before the size, a change meanwhile triggers another resize
+            analysisSizeVersion = analysisSizePolicy.getVersion();
+            int width = analysisSizePolicy.getWidth();
+            int height = analysisSizePolicy.getHeight();
+            if (null == cameraDevice || null == captureSession || isAnalysisSize(width, height)) {
+                return;
             }
+            captureSession.close();
+            captureSession = null;
+            imageReaderPreviewYUV.close();
+
+            analysisSize = new Size(width, height);
+            imageReaderPreviewYUV = createAnalysisReader(analysisSize);
+            // Positions and scores of the previous size are not comparable
+            symbolTracker.reset();
+            sceneChangeDetector.reset();
+            sharpnessGate.reset();
+            Log.i(TAG, "Analysis size: " + width + "x" + height);
+
+            createCameraPreviewSession();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            cameraOpenCloseLock.release();
         }
+    }
 
-        for (Integer validExposureTime : CameraConstants.validExposureTimes) {
-            long expTimeInNanos = CameraConstants.SEC_IN_NANO / validExposureTime;
-            if(exposureRange.contains(expTimeInNanos)){
-                supportedExposureList.add(validExposureTime);
-            }
+    private boolean isAnalysisSize(int width, int height) {
+        return analysisSize != null
+                && analysisSize.getWidth() == width && analysisSize.getHeight() == height;
+    }
+
+    private static List<int[]> toSizeList(Size[] sizes) {
+        List<int[]> list = new ArrayList<>();
+        for (Size size : sizes) {
+            list.add(new int[]{size.getWidth(), size.getHeight()});
         }
+        return list;
+    }
 
+    /**
+     * Passes the manual settings of the camera to the listener
+     * @param config of the actual camera
+     */
+    private void notifyManualSettingsLoaded(CameraConfig config){
         if(settingsLoadedListener != null){
+            ArrayList<Integer> supportedIsoList = config.getIsoValues();
+            ArrayList<Integer> supportedExposureList = config.getExposureTimes();
             settingsLoadedListener.onIsoRangeLoaded(supportedIsoList, supportedIsoList.indexOf(100));
             settingsLoadedListener.onExposureTimeRangeLoaded(
                     supportedExposureList, supportedExposureList.indexOf(125));
@@ -385,13 +669,15 @@ public class CameraHelper {
             previewRequestBuilder
                     = cameraDevice.createCaptureRequest(CameraDevice.TEMPLATE_PREVIEW);
             previewRequestBuilder.addTarget(surface);
-
-            // todo handle addTarget only if QR reader is enabled
-//            previewRequestBuilder.addTarget(imageReaderPreviewYUV.getSurface());
+            // A recreated session keeps scanning
+            applyMode();
 
             // Here, we create a CameraCaptureSession for camera preview for all surfaces
+            // The zero shutter lag stream replaces the still capture stream, its photos are encoded
+            // in software. It is only offered on FULL devices, others may still reject the session.
+            final ImageReader stillReader = imageReaderZsl != null ? imageReaderZsl : imageReaderJPEG;
             cameraDevice.createCaptureSession(Arrays.asList(surface,
-                            imageReaderPreviewYUV.getSurface(), imageReaderJPEG.getSurface()),
+                            imageReaderPreviewYUV.getSurface(), stillReader.getSurface()),
                       new CameraCaptureSession.StateCallback() {
 
                         @Override
@@ -418,6 +704,15 @@ public class CameraHelper {
 
                         @Override
                         public void onConfigureFailed(CameraCaptureSession cameraCaptureSession) {
+                            if (stillReader == imageReaderZsl) {
+                                backgroundHandler.post(new Runnable() {
+                                    @Override
+                                    public void run() {
+                                        disableZeroShutterLag();
+                                    }
+                                });
+                                return;
+                            }
                             UIHelper.makeToast("Failed");
                         }
                     }, null
@@ -455,23 +750,103 @@ public class CameraHelper {
             matrix.postRotate(90 * (rotation - 2), centerX, centerY);
         }
         hostTextureView.setTransform(matrix);
+        updateScanRegion(matrix, viewWidth, viewHeight);
     }
 
     /**
-     * Opens the camera specified by mCameraId.
+     * Maps the centered viewfinder box of the view to preview frame coordinates.
+     * The box is taken back through the texture transform, then rotated by the sensor
+     * orientation, as the texture shows the frame rotated by that.
+     *
+     * @param transform  The transformation set to `mTextureView`
+     * @param viewWidth  The width of `mTextureView`
+     * @param viewHeight The height of `mTextureView`
+     */
+    private void updateScanRegion(Matrix transform, int viewWidth, int viewHeight) {
+        if (viewWidth == 0 || viewHeight == 0) {
+            return;
+        }
+        float margin = (1f - scanRegionFraction) / 2f;
+        RectF viewfinder = new RectF(viewWidth * margin, viewHeight * margin,
+                viewWidth * (1f - margin), viewHeight * (1f - margin));
+        Matrix inverse = new Matrix();
+        if (transform.invert(inverse)) {
+            inverse.mapRect(viewfinder);
+        }
+        scanRegion.setFromDisplay(viewfinder.left / viewWidth, viewfinder.top / viewHeight,
+                viewfinder.right / viewWidth, viewfinder.bottom / viewHeight, sensorOrientation);
+    }
+
+    /**
+     * Opens the camera on the background thread.
+     * The outputs are set up in parallel once the preview surface is available,
+     * the preview starts when both are done, see {@link #startPreviewIfReady}.
+     */
+    private void openCamera() {
+        cameraOpenRequested = true;
+        backgroundHandler.post(openCameraTask);
+    }
+
+    private final Runnable openCameraTask = new Runnable() {
+        @Override
+        public void run() {
+            try {
+                if (!cameraOpenCloseLock.tryAcquire(2500, TimeUnit.MILLISECONDS)) {
+                    throw new RuntimeException("Time out waiting to lock camera opening.");
+                }
+            } catch (InterruptedException e) {
+                throw new RuntimeException("Interrupted while trying to lock camera opening.", e);
+            }
+            // The state callback releases the lock once the camera is opening
+            boolean opening = false;
+            try {
+                // Closed meanwhile
+                if (!cameraOpenRequested) {
+                    return;
+                }
+                CameraConfig config = CameraConfigCache.get(cameraManager);
+                if (config == null) {
+                    alertNotSupported();
+                    return;
+                }
+                mCameraId = config.getCameraId();
+                cameraManager.openCamera(mCameraId, mStateCallback, backgroundHandler);
+                opening = true;
+            } catch (CameraAccessException e) {
+                e.printStackTrace();
+            } catch (NullPointerException e) {
+                // Camera2API is used but not supported on the device.
+                alertNotSupported();
+            } finally {
+                if (!opening) {
+                    cameraOpenCloseLock.release();
+                }
+            }
+        }
+    };
+
+    /**
+     * Sets up the outputs for the size of the available preview surface
      */
-    private void openCamera(int width, int height) {
+    private void onSurfaceReady(int width, int height) {
         setUpCameraOutputs(width, height);
         configureTransform(width, height);
-        try {
-            if (!cameraOpenCloseLock.tryAcquire(2500, TimeUnit.MILLISECONDS)) {
-                throw new RuntimeException("Time out waiting to lock camera opening.");
+        backgroundHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                outputsReady = true;
+                startPreviewIfReady();
             }
-            cameraManager.openCamera(mCameraId, mStateCallback, backgroundHandler);
-        } catch (CameraAccessException e) {
-            e.printStackTrace();
-        } catch (InterruptedException e) {
-            throw new RuntimeException("Interrupted while trying to lock camera opening.", e);
+        });
+    }
+
+    /**
+     * Creates the preview session once both the camera and the outputs are ready,
+     * called on the background thread
+     */
+    private void startPreviewIfReady() {
+        if (cameraDevice != null && outputsReady) {
+            createCameraPreviewSession();
         }
     }
 
@@ -481,6 +856,12 @@ public class CameraHelper {
     private void closeCamera() {
         try {
             cameraOpenCloseLock.acquire();
+            cameraOpenRequested = false;
+            outputsReady = false;
+            // Frames of a running burst never arrive
+            burstStats = null;
+            shutterTimes.clear();
+            closeZslReader();
             if (null != captureSession) {
                 captureSession.close();
                 captureSession = null;
@@ -493,6 +874,7 @@ public class CameraHelper {
                 imageReaderPreviewYUV.close();
                 imageReaderPreviewYUV = null;
             }
+            decodeExecutor.stop();
         } catch (InterruptedException e) {
             throw new RuntimeException("Interrupted while trying to lock camera closing.", e);
         } finally {
@@ -509,6 +891,18 @@ public class CameraHelper {
      * Initiate a still image capture.
      */
     public void takePicture() {
+        if(burstStats != null){
+            return;
+        }
+        // Slow storage, the photos taken so far are still being saved
+        if(!photoWriter.hasCapacity()){
+            UIHelper.makeToast(R.string.photo_writer_busy);
+            return;
+        }
+        if(isZslActive()){
+            takeZslPicture();
+            return;
+        }
         if(isAutomaticMode){
             lockFocus();
         } else {
@@ -564,33 +958,17 @@ public class CameraHelper {
             }
             // This is the CaptureRequest.Builder that we use to take a picture.
             final CaptureRequest.Builder captureBuilder =
-                    cameraDevice.createCaptureRequest(CameraDevice.TEMPLATE_STILL_CAPTURE);
-            captureBuilder.addTarget(imageReaderJPEG.getSurface());
-
-
-            // Configure AE & AF modes
-            if(isAutomaticMode){
-                captureBuilder.set(CaptureRequest.CONTROL_AF_MODE,
-                        CaptureRequest.CONTROL_AF_MODE_CONTINUOUS_PICTURE);
-                captureBuilder.set(CaptureRequest.CONTROL_AE_MODE,
-                        CaptureRequest.CONTROL_AE_MODE_ON_AUTO_FLASH);
-
-            } else {
-                captureBuilder.set(CaptureRequest.CONTROL_AF_MODE,
-                        previewRequestBuilder.get(CaptureRequest.CONTROL_AF_MODE));
-                captureBuilder.set(CaptureRequest.CONTROL_AE_MODE,
-                        previewRequestBuilder.get(CaptureRequest.CONTROL_AE_MODE));
-                captureBuilder.set(CaptureRequest.SENSOR_EXPOSURE_TIME, selectedExposureTime);
-                captureBuilder.set(CaptureRequest.SENSOR_SENSITIVITY, selectedIso);
-            }
-
-            // Orientation
-            int rotation = hostActivity.getWindowManager().getDefaultDisplay().getRotation();
-            captureBuilder.set(CaptureRequest.JPEG_ORIENTATION, CameraConstants.ORIENTATIONS.get(rotation));
+                    createStillCaptureBuilder(CaptureRequest.CONTROL_AE_MODE_ON_AUTO_FLASH);
 
             CameraCaptureSession.CaptureCallback CaptureCallback
                     = new CameraCaptureSession.CaptureCallback() {
 
+                @Override
+                public void onCaptureStarted(CameraCaptureSession session, CaptureRequest request,
+                                             long timestamp, long frameNumber) {
+                    shutterTimes.put(timestamp, System.nanoTime());
+                }
+
                 @Override
                 public void onCaptureCompleted(CameraCaptureSession session, CaptureRequest request,
                                                TotalCaptureResult result) {
@@ -616,6 +994,263 @@ public class CameraHelper {
         }
     }
 
+    /**
+     * Creates a still capture request for the JPEG reader with the current AE & AF settings
+     * @param autoAeMode The AE mode to use in automatic mode
+     */
+    private CaptureRequest.Builder createStillCaptureBuilder(int autoAeMode) throws CameraAccessException {
+        CaptureRequest.Builder captureBuilder =
+                cameraDevice.createCaptureRequest(CameraDevice.TEMPLATE_STILL_CAPTURE);
+        captureBuilder.addTarget(imageReaderJPEG.getSurface());
+
+        // Configure AE & AF modes
+        if(isAutomaticMode){
+            captureBuilder.set(CaptureRequest.CONTROL_AF_MODE,
+                    CaptureRequest.CONTROL_AF_MODE_CONTINUOUS_PICTURE);
+            captureBuilder.set(CaptureRequest.CONTROL_AE_MODE, autoAeMode);
+
+        } else {
+            captureBuilder.set(CaptureRequest.CONTROL_AF_MODE,
+                    previewRequestBuilder.get(CaptureRequest.CONTROL_AF_MODE));
+            captureBuilder.set(CaptureRequest.CONTROL_AE_MODE,
+                    previewRequestBuilder.get(CaptureRequest.CONTROL_AE_MODE));
+            captureBuilder.set(CaptureRequest.SENSOR_EXPOSURE_TIME, selectedExposureTime);
+            captureBuilder.set(CaptureRequest.SENSOR_SENSITIVITY, selectedIso);
+        }
+
+        // Orientation
+        int rotation = hostActivity.getWindowManager().getDefaultDisplay().getRotation();
+        captureBuilder.set(CaptureRequest.JPEG_ORIENTATION, CameraConstants.ORIENTATIONS.get(rotation));
+        return captureBuilder;
+    }
+
+    /**
+     * Captures {@link CameraConstants#BURST_FRAME_COUNT} stills at sensor speed.
+     * The preview keeps running and focus & exposure are not locked again, the continuous
+     * auto focus and exposure are used as they are. The photos are saved by #photoWriter
+     * while the next ones are captured, the frame rate and the shutter to disk times
+     * are reported when the last one is written.
+     */
+    public void takeBurst() {
+        if (burstStats != null || null == hostActivity || null == cameraDevice || null == captureSession) {
+            return;
+        }
+        // The still capture stream is not configured
+        if (isZslActive()) {
+            Log.w(TAG, "No burst with zero shutter lag");
+            return;
+        }
+        if (photoWriter.getFreeCount() < CameraConstants.BURST_FRAME_COUNT) {
+            UIHelper.makeToast(R.string.photo_writer_busy);
+            return;
+        }
+        try {
+            // No flash, it could not keep up with the sensor
+            CaptureRequest request =
+                    createStillCaptureBuilder(CaptureRequest.CONTROL_AE_MODE_ON).build();
+            List<CaptureRequest> requests = new ArrayList<>();
+            for (int i = 0; i < CameraConstants.BURST_FRAME_COUNT; i++) {
+                requests.add(request);
+            }
+            burstStats = new BurstStats(CameraConstants.BURST_FRAME_COUNT);
+            captureSession.captureBurst(requests, new BurstCaptureCallback(burstStats), backgroundHandler);
+        } catch (CameraAccessException e) {
+            burstStats = null;
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Turns zero shutter lag on or off, the capture session is recreated with or without its stream.
+     * The selection is persisted. Ignored when the camera does not support it.
+     */
+    public void setZeroShutterLag(boolean enabled) {
+        if (enabled && !zeroShutterLagSupported) {
+            Log.w(TAG, "Zero shutter lag is not supported by the camera");
+            return;
+        }
+        zeroShutterLag = enabled;
+        SettingsHelper.saveZeroShutterLag(enabled);
+        backgroundHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                switchZslStream();
+            }
+        });
+    }
+
+    public boolean isZeroShutterLag() {
+        return zeroShutterLag;
+    }
+
+    /**
+     * Whether the hardware level of the camera allows the zero shutter lag stream,
+     * known once the camera outputs are set up
+     */
+    public boolean isZeroShutterLagSupported() {
+        return zeroShutterLagSupported;
+    }
+
+    private boolean isZslActive() {
+        return isPhotoModeEnabled && zslRingBuffer != null;
+    }
+
+    /**
+     * Saves a buffered frame from around the press instead of capturing a new one,
+     * the frame is chosen and copied on the background thread, encoded and written by #photoWriter
+     */
+    private void takeZslPicture() {
+        final long pressTime = System.nanoTime();
+        int rotation = hostActivity.getWindowManager().getDefaultDisplay().getRotation();
+        final int orientation = CameraConstants.ORIENTATIONS.get(rotation);
+        backgroundHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                ZslRingBuffer ringBuffer = zslRingBuffer;
+                Image image = ringBuffer != null
+                        ? ringBuffer.take(pressTime, CameraConstants.ZSL_SHARPEST_OF) : null;
+                if (image == null) {
+                    Log.w(TAG, "No zero shutter lag frame yet");
+                    return;
+                }
+                try {
+                    if (!photoWriter.submitYuv(image, orientation, pressTime)) {
+                        Log.w(TAG, "Photo writer is full, photo dropped");
+                    }
+                } finally {
+                    image.close();
+                }
+            }
+        });
+    }
+
+    /**
+     * Creates the zero shutter lag stream at the largest YUV size with the aspect ratio of the photos
+     * at which {@link CameraConstants#ZSL_MIN_FRAMES} fit into the memory limit.
+     * Every slot of {@link #photoWriter} may hold a copy of a frame, so they count against the limit too.
+     */
+    private void createZslReader(Size[] yuvSizes, Size photoSize) {
+        long memoryLimit = SettingsHelper.getZslMemoryLimitMb() * 1024L * 1024L;
+        Size[] sizes = yuvSizes.clone();
+        Arrays.sort(sizes, Collections.reverseOrder(new CompareSizesByArea()));
+        for (Size size : sizes) {
+            boolean sameAspect = (long) size.getWidth() * photoSize.getHeight()
+                    == (long) size.getHeight() * photoSize.getWidth();
+            long writerBytes = CameraConstants.PHOTO_WRITER_CAPACITY
+                    * PhotoWriter.yuvBytesFor(size.getWidth(), size.getHeight());
+            int capacity = ZslRingBuffer.capacityFor(size.getWidth(), size.getHeight(),
+                    Math.max(0, memoryLimit - writerBytes));
+            if (sameAspect && capacity >= CameraConstants.ZSL_MIN_FRAMES) {
+                ZslRingBuffer ringBuffer =
+                        new ZslRingBuffer(Math.min(capacity, CameraConstants.ZSL_MAX_FRAMES));
+                ImageReader reader = ImageReader.newInstance(size.getWidth(), size.getHeight(),
+                        ImageFormat.YUV_420_888, ringBuffer.getMaxImages());
+                reader.setOnImageAvailableListener(ringBuffer, backgroundHandler);
+                imageReaderZsl = reader;
+                zslRingBuffer = ringBuffer;
+                Log.i(TAG, "Zero shutter lag: " + ringBuffer.getMaxImages() + " frames of "
+                        + size.getWidth() + "x" + size.getHeight());
+                return;
+            }
+        }
+        Log.w(TAG, "No zero shutter lag size fits into " + memoryLimit + " bytes");
+    }
+
+    private void closeZslReader() {
+        ZslRingBuffer ringBuffer = zslRingBuffer;
+        ImageReader reader = imageReaderZsl;
+        zslRingBuffer = null;
+        imageReaderZsl = null;
+        if (ringBuffer != null) {
+            ringBuffer.close();
+        }
+        if (reader != null) {
+            reader.close();
+        }
+    }
+
+    /**
+     * Recreates the capture session with the current zero shutter lag setting,
+     * runs on the background thread
+     */
+    private void switchZslStream() {
+        try {
+            cameraOpenCloseLock.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        try {
+            if (null == cameraDevice || null == captureSession
+                    || zeroShutterLag == (imageReaderZsl != null)) {
+                return;
+            }
+            captureSession.close();
+            captureSession = null;
+            closeZslReader();
+            if (zeroShutterLag) {
+                CameraConfig config = CameraConfigCache.get(cameraManager);
+                if (config != null) {
+                    createZslReader(config.getYuvSizes(), config.getJpegSize());
+                }
+            }
+            createCameraPreviewSession();
+        } catch (CameraAccessException e) {
+            e.printStackTrace();
+        } finally {
+            cameraOpenCloseLock.release();
+        }
+    }
+
+    /**
+     * The camera rejected the session with the zero shutter lag stream: it is turned off, also in
+     * the settings, and the regular session is created instead. Runs on the background thread.
+     */
+    private void disableZeroShutterLag() {
+        Log.w(TAG, "Zero shutter lag session could not be configured, turning it off");
+        zeroShutterLag = false;
+        zeroShutterLagSupported = false;
+        SettingsHelper.saveZeroShutterLag(false);
+        try {
+            cameraOpenCloseLock.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        try {
+            closeZslReader();
+            if (null != cameraDevice) {
+                createCameraPreviewSession();
+            }
+        } finally {
+            cameraOpenCloseLock.release();
+        }
+        hostActivity.runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                UIHelper.makeToast(R.string.zero_shutter_lag_failed);
+            }
+        });
+    }
+
+    /**
+     * Reports the burst once all of its frames are saved or lost
+     */
+    private void finishBurst(BurstStats burst) {
+        if (burstStats != burst) {
+            return;
+        }
+        burstStats = null;
+        final String summary = burst.format();
+        Log.i(TAG, summary);
+        hostActivity.runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                UIHelper.makeToast(summary);
+            }
+        });
+    }
+
     /**
      * Unlock the focus. This method should be called when still image capture sequence is finished.
      */
@@ -649,96 +1284,234 @@ public class CameraHelper {
      * *********************************************************************************************
      */
     private final class JPEGImageAvailableListener implements  ImageReader.OnImageAvailableListener{
+
+        /**
+         * Called on {@link #backgroundHandler}, only copies the JPEG, {@link #photoWriter} saves it
+         */
         @Override
         public void onImageAvailable(final ImageReader reader) {
-
-            backgroundHandler.post(new Runnable() {
-                @Override
-                public void run() {
-                    Image image = reader.acquireNextImage();
-
-                    String filename = CameraConstants.dateFormat.format(new Date()) + ".jpg";
-
-                    ByteBuffer buffer = image.getPlanes()[0].getBuffer();
-                    byte[] bytes = new byte[buffer.remaining()];
-                    buffer.get(bytes);
-                    FileOutputStream output = null;
-                    try {
-                        output = new FileOutputStream(StorageHelper.getExternalStorageFile(filename));
-                        output.write(bytes);
-                    } catch (FileNotFoundException e) {
-                        e.printStackTrace();
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                    } finally {
-                        image.close();
-                        if (null != output) {
-                            try {
-                                output.close();
-                            } catch (IOException e) {
-                                e.printStackTrace();
-                            }
-                        }
+            Image image = reader.acquireNextImage();
+            if (image == null) {
+                return;
+            }
+            try {
+                Long shutter = shutterTimes.remove(image.getTimestamp());
+                long shutterTime = shutter != null ? shutter : 0;
+                if (!photoWriter.submit(image, shutterTime)) {
+                    Log.w(TAG, "Photo writer is full, photo dropped");
+                    BurstStats burst = burstStats;
+                    if (burst != null && burst.isFrameOf(shutterTime) && burst.onLost()) {
+                        finishBurst(burst);
                     }
                 }
-            });
+            } finally {
+                image.close();
+            }
         }
     }
 
-    private final class PreviewImageAvailableListener implements ImageReader.OnImageAvailableListener{
+    private final class PhotoSavedListener implements IPhotoSavedListener {
+
+        /**
+         * Called on the photo writer thread
+         */
+        @Override
+        public void onPhotoSaved(File file, long shutterTime) {
+            BurstStats burst = burstStats;
+            if (burst != null && burst.isFrameOf(shutterTime) && burst.onSaved(shutterTime)) {
+                finishBurst(burst);
+            }
+        }
 
         @Override
-        public void onImageAvailable(final ImageReader reader) {
+        public void onPhotoFailed(long shutterTime) {
+            BurstStats burst = burstStats;
+            if (burst != null && burst.isFrameOf(shutterTime) && burst.onLost()) {
+                finishBurst(burst);
+            }
+        }
+    }
 
-            backgroundHandler.post(new Runnable() {
-                @Override
-                public void run() {
-                    Log.d(TAG, "Preview catched");
+    /**
+     * Feeds the shutter times of a burst, failed frames never reach the writer
+     */
+    private final class BurstCaptureCallback extends CameraCaptureSession.CaptureCallback {
+
+        private final BurstStats burst;
 
-                    Image image = reader.acquireNextImage();
+        BurstCaptureCallback(BurstStats burst) {
+            this.burst = burst;
+        }
+
+        @Override
+        public void onCaptureStarted(CameraCaptureSession session, CaptureRequest request,
+                                     long timestamp, long frameNumber) {
+            long shutterTime = System.nanoTime();
+            shutterTimes.put(timestamp, shutterTime);
+            burst.onShutter(shutterTime);
+        }
+
+        @Override
+        public void onCaptureFailed(CameraCaptureSession session, CaptureRequest request,
+                                    CaptureFailure failure) {
+            if (burst.onLost()) {
+                finishBurst(burst);
+            }
+        }
+    }
 
-                    if(!previousImageParsed){
-                        image.close();
-                        return;
+    private final class PreviewImageAvailableListener implements ImageReader.OnImageAvailableListener{
+
+        /**
+         * Called on {@link #backgroundHandler}, only copies the luma plane and hands it
+         * over to {@link #decodeExecutor}.
+         */
+        @Override
+        public void onImageAvailable(final ImageReader reader) {
+            long arrival = System.nanoTime();
+            if (lastFrameArrival != 0) {
+                scanMetrics.record(ScanMetrics.Stage.ARRIVAL, arrival - lastFrameArrival);
+            }
+            lastFrameArrival = arrival;
+
+            // The size policy asks for another resolution
+            if (!analysisResizePending && analysisSizePolicy.getVersion() != analysisSizeVersion) {
+                analysisResizePending = true;
+                backgroundHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        resizeAnalysisStream();
                     }
+                });
+            }
 
-                    previousImageParsed = false;
-                    try {
-                        ByteBuffer buffer = image.getPlanes()[0].getBuffer();
-                        byte[] data = new byte[buffer.remaining()];
-                        buffer.get(data);
-
-                        Log.d(TAG, "Buffer read");
-
-                        net.sourceforge.zbar.Image barcode =
-                                new net.sourceforge.zbar.Image(
-                                        reader.getWidth(),
-                                        reader.getHeight(),
-                                        "Y800");
-                        barcode.setData(data);
-                        int result = imageScanner.scanImage(barcode);
-
-                        if (result != 0) {
-                            SymbolSet syms = imageScanner.getResults();
-                            for (Symbol sym : syms) {
-                                String decoded = Uri.decode(sym.getData());
-                                Log.d(TAG, "QR data: " + decoded);
-                                if(qrFoundListener != null){
-                                    qrFoundListener.onFound(decoded);
-                                }
-                                break;
-                            }
-                        }
+            Image image = reader.acquireLatestImage();
+            if (image == null) {
+                return;
+            }
+            scanMetrics.onFrameReceived();
+            long imageAcquireNanos = System.nanoTime() - arrival;
+
+            LumaFrame frame = null;
+            try {
+                Image.Plane yPlane = image.getPlanes()[0];
+                lumaPlane.wrap(yPlane.getBuffer(), image.getWidth(), image.getHeight(),
+                        yPlane.getRowStride(), yPlane.getPixelStride());
+
+                // Blurry frames are not even copied
+                long gateStart = System.nanoTime();
+                boolean sharp = sharpnessGate.accept(lumaPlane);
+                if (sharpnessGate.getEvaluatedFrames() % CameraConstants.SHARPNESS_REPORT_INTERVAL == 0) {
+                    Log.i(TAG, "Sharpness skip rate: " + sharpnessGate.getSkipRate()
+                            + ", average score: " + sharpnessGate.getAverageScore());
+                }
+                if (!sharp) {
+                    scanMetrics.onFrameSkipped();
+                    return;
+                }
+
+                // Nothing moved since the last decoded frame
+                if (!sceneChangeDetector.accept(lumaPlane)) {
+                    scanMetrics.onFrameSkipped();
+                    return;
+                }
+                long frameAcquireStart = System.nanoTime();
+                scanMetrics.record(ScanMetrics.Stage.GATE, frameAcquireStart - gateStart);
+
+                // Every frame is in use, the workers are behind
+                frame = decodeExecutor.acquireFrame(image.getWidth() * image.getHeight());
+                long copyStart = System.nanoTime();
+                scanMetrics.record(ScanMetrics.Stage.ACQUIRE,
+                        imageAcquireNanos + copyStart - frameAcquireStart);
+                if (frame == null) {
+                    scanMetrics.onFrameDropped();
+                    return;
+                }
+                frame.setTimestamp(image.getTimestamp());
+                if (symbolTracker.predict(image.getTimestamp(), image.getWidth(), image.getHeight(),
+                        trackedWindow)) {
+                    lumaPlane.copyRegionTo(frame, trackedWindow[0], trackedWindow[1],
+                            trackedWindow[2], trackedWindow[3]);
+                    frame.setTracked(true);
+                } else {
+                    scanRegion.copy(lumaPlane, frame);
+                    frame.setTracked(false);
+                }
+                scanMetrics.record(ScanMetrics.Stage.COPY, System.nanoTime() - copyStart);
+
+                decodeExecutor.submit(frame);
+                frame = null;
+            } catch (Exception e){
+                Log.e(TAG, "Preview frame copy failed");
+            } finally {
+                lumaPlane.clear();
+                decodeExecutor.releaseFrame(frame);
+                image.close();
+            }
+        }
+    }
+
+    private final class QRDecodeListener implements IDecodeListener {
 
-                        Log.i(TAG, "Result: " + result);
-                    } catch (Exception e){
-                        Log.e(TAG, "Barcode scanner failed");
-                    } finally {
-                        previousImageParsed = true;
-                        image.close();
+        /**
+         * Called on a decode worker thread
+         */
+        @Override
+        public void onDecoded(List<DecodedSymbol> symbols) {
+            List<DecodedSymbol> newSymbols = null;
+            for (DecodedSymbol symbol : symbols) {
+                if (symbol.isStructuredAppend()) {
+                    symbol = structuredAppendAssembler.offer(symbol);
+                    if (symbol == null) {
+                        continue;
                     }
                 }
-            });
+                // The code is still in view, it has already been delivered
+                if (!resultDeduplicator.isNew(symbol.getData())) {
+                    continue;
+                }
+                if (newSymbols == null) {
+                    newSymbols = new ArrayList<>(symbols.size());
+                }
+                newSymbols.add(symbol);
+                HistoryHelper.record(symbol);
+            }
+            if (newSymbols == null) {
+                return;
+            }
+            StartupHelper.onFirstDecode();
+            Log.d(TAG, newSymbols.size() + " new of " + symbols.size() + " codes in the frame");
+            payloadProcessor.process(newSymbols, payloadListener);
+        }
+
+        /**
+         * Called on a decode worker thread
+         */
+        @Override
+        public void onError(Throwable error) {
+            Log.e(TAG, "Decoding failed", error);
+        }
+    }
+
+    private final class QRPayloadListener implements IPayloadListener {
+
+        /**
+         * Called on the payload parser thread
+         */
+        @Override
+        public void onParsed(List<DecodedSymbol> symbols, List<ParsedPayload> payloads) {
+            for (ParsedPayload payload : payloads) {
+                Log.d(TAG, payload.getType() + " data: " + payload.getDisplayText());
+            }
+            resultDispatcher.post(symbols, payloads);
+        }
+
+        /**
+         * Called on the payload parser thread
+         */
+        @Override
+        public void onError(DecodedSymbol symbol, Throwable error) {
+            Log.e(TAG, "Parsing failed: " + symbol.getData(), error);
         }
     }
 
@@ -804,7 +1577,7 @@ public class CameraHelper {
 
         @Override
         public void onSurfaceTextureAvailable(SurfaceTexture texture, int width, int height) {
-            openCamera(width, height);
+            onSurfaceReady(width, height);
         }
 
         @Override
@@ -819,6 +1592,7 @@ public class CameraHelper {
 
         @Override
         public void onSurfaceTextureUpdated(SurfaceTexture texture) {
+            StartupHelper.onFirstPreviewFrame();
         }
     };
 
@@ -832,7 +1606,7 @@ public class CameraHelper {
             // This method is called when the camera is opened.  We start camera preview here.
             cameraOpenCloseLock.release();
             CameraHelper.this.cameraDevice = cameraDevice;
-            createCameraPreviewSession();
+            startPreviewIfReady();
         }
 
         @Override
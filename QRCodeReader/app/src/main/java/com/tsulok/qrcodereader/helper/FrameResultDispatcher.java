@@ -0,0 +1,164 @@
+package com.tsulok.qrcodereader.helper;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+
+import com.tsulok.qrcodereader.IQRBatchFound;
+import com.tsulok.qrcodereader.IQRFound;
+import com.tsulok.qrcodereader.scan.DecodedSymbol;
+import com.tsulok.qrcodereader.scan.ParsedPayload;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Delivers the found codes to the UI on the main thread, at most once per display frame.
+ * Results posted from any thread are merged into the one still waiting: the batch listener gets
+ * every code posted since the last frame once, the single code listener only the newest.
+ * The work of the UI does not grow with the decode rate.
+ */
+public class FrameResultDispatcher implements Choreographer.FrameCallback {
+
+    /**
+     * The codes of one frame, as delivered by the payload processor
+     */
+    private static final class Result {
+        final List<DecodedSymbol> symbols;
+        final List<ParsedPayload> payloads;
+
+        Result(List<DecodedSymbol> symbols, List<ParsedPayload> payloads) {
+            this.symbols = symbols;
+            this.payloads = payloads;
+        }
+    }
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final AtomicReference<Result> pendingResult = new AtomicReference<>();
+    private final AtomicBoolean frameScheduled = new AtomicBoolean();
+    private final AtomicLong mergedResults = new AtomicLong();
+
+    /**
+     * The Choreographer belongs to the thread it is taken on, so it is scheduled from the main thread
+     */
+    private final Runnable scheduleFrame = new Runnable() {
+        @Override
+        public void run() {
+            Choreographer.getInstance().postFrameCallback(FrameResultDispatcher.this);
+        }
+    };
+
+    private volatile IQRFound qrFoundListener;
+    private volatile IQRBatchFound qrBatchFoundListener;
+
+    /**
+     * @param qrFoundListener Gets the newest code of a display frame, if there is no batch listener
+     */
+    public FrameResultDispatcher(IQRFound qrFoundListener) {
+        this.qrFoundListener = qrFoundListener;
+    }
+
+    /**
+     * @param qrBatchFoundListener Gets the codes of a display frame instead of the {@link IQRFound}, may be null
+     */
+    public void setBatchFoundListener(IQRBatchFound qrBatchFoundListener) {
+        this.qrBatchFoundListener = qrBatchFoundListener;
+    }
+
+    /**
+     * Queues the codes for the next display frame, after the ones still waiting. Never blocks.
+     * @param symbols The codes of a decoded frame
+     * @param payloads The parsed content of each code, in the same order
+     */
+    public void post(List<DecodedSymbol> symbols, List<ParsedPayload> payloads) {
+        Result posted = new Result(symbols, payloads);
+        while (true) {
+            Result pending = pendingResult.get();
+            if (pendingResult.compareAndSet(pending, pending != null ? merge(pending, posted) : posted)) {
+                if (pending != null) {
+                    mergedResults.incrementAndGet();
+                }
+                break;
+            }
+        }
+        if (frameScheduled.compareAndSet(false, true)) {
+            if (Looper.myLooper() == Looper.getMainLooper()) {
+                scheduleFrame.run();
+            } else {
+                mainHandler.post(scheduleFrame);
+            }
+        }
+    }
+
+    /**
+     * Called on the main thread before the next frame is drawn
+     */
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        // Cleared first, a result posted from now on schedules the next frame
+        frameScheduled.set(false);
+        Result result = pendingResult.getAndSet(null);
+        if (result == null || result.payloads.isEmpty()) {
+            return;
+        }
+        IQRBatchFound batchListener = qrBatchFoundListener;
+        if (batchListener != null) {
+            batchListener.onBatchFound(result.symbols, result.payloads);
+            return;
+        }
+        IQRFound foundListener = qrFoundListener;
+        if (foundListener != null) {
+            foundListener.onFound(result.payloads.get(result.payloads.size() - 1).getDisplayText());
+        }
+    }
+
+    /**
+     * @return The number of results merged into a waiting one within the same display frame
+     */
+    public long getMergedResults() {
+        return mergedResults.get();
+    }
+
+    /**
+     * The waiting codes which were not posted again, then the posted ones, so the newest code stays last
+     */
+    private static Result merge(Result pending, Result posted) {
+        int size = pending.symbols.size() + posted.symbols.size();
+        List<DecodedSymbol> symbols = new ArrayList<>(size);
+        List<ParsedPayload> payloads = new ArrayList<>(size);
+        for (int i = 0; i < pending.symbols.size(); i++) {
+            DecodedSymbol symbol = pending.symbols.get(i);
+            if (!contains(posted.symbols, symbol)) {
+                symbols.add(symbol);
+                payloads.add(pending.payloads.get(i));
+            }
+        }
+        symbols.addAll(posted.symbols);
+        payloads.addAll(posted.payloads);
+        return new Result(symbols, payloads);
+    }
+
+    private static boolean contains(List<DecodedSymbol> symbols, DecodedSymbol symbol) {
+        for (DecodedSymbol other : symbols) {
+            if (other.getType() == symbol.getType() && other.getData().equals(symbol.getData())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Drops the waiting result and stops the delivery, called on the main thread
+     */
+    public void release() {
+        qrFoundListener = null;
+        qrBatchFoundListener = null;
+        pendingResult.set(null);
+        mainHandler.removeCallbacks(scheduleFrame);
+        Choreographer.getInstance().removeFrameCallback(this);
+        frameScheduled.set(false);
+    }
+}
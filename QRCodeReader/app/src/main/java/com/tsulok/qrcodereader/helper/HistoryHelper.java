@@ -0,0 +1,74 @@
+package com.tsulok.qrcodereader.helper;
+
+import android.util.Log;
+
+import com.tsulok.qrcodereader.App;
+import com.tsulok.qrcodereader.scan.DecodedSymbol;
+import com.tsulok.qrcodereader.scan.ScanHistoryLog;
+import com.tsulok.qrcodereader.scan.ScanRecord;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records the found codes into the {@link ScanHistoryLog} of the app.
+ * The log is opened once, by the startup warm up. Codes found before it is open are not recorded,
+ * the decode workers never wait for the disk.
+ */
+public class HistoryHelper {
+
+    private static final String TAG = "HistoryHelper";
+
+    private static final String DIRECTORY_NAME = "history";
+
+    private static volatile ScanHistoryLog log;
+    private static boolean openFailed;
+    private static final AtomicLong droppedRecords = new AtomicLong();
+
+    /**
+     * Opens the history on the first call, which reads the records after the last checkpoint.
+     * Must not be called on the main thread or the decode workers.
+     * @return The history, or null if it cannot be opened
+     */
+    public static synchronized ScanHistoryLog getLog() {
+        if (log == null && !openFailed) {
+            long start = System.nanoTime();
+            try {
+                log = ScanHistoryLog.open(new File(App.getAppContext().getFilesDir(), DIRECTORY_NAME));
+                Log.d(TAG, "History of " + log.size() + " scans opened in "
+                        + (System.nanoTime() - start) / 1000000 + " ms");
+            } catch (IOException e) {
+                // Scanning works without the history, don't retry on every code
+                openFailed = true;
+                e.printStackTrace();
+            }
+        }
+        return log;
+    }
+
+    /**
+     * Queues the code for the history, returns immediately.
+     * The code is dropped if the history is not open yet.
+     */
+    public static void record(DecodedSymbol symbol) {
+        ScanHistoryLog history = log;
+        if (history == null) {
+            if (droppedRecords.incrementAndGet() == 1) {
+                Log.w(TAG, "History is not open yet, scan not recorded");
+            }
+            return;
+        }
+        if (!history.append(ScanRecord.fromSymbol(System.currentTimeMillis(), symbol))) {
+            droppedRecords.incrementAndGet();
+            Log.w(TAG, "History writer is behind, scan not recorded");
+        }
+    }
+
+    /**
+     * @return The number of codes not recorded, because the history was not open or its writer was behind
+     */
+    public static long getDroppedRecords() {
+        return droppedRecords.get();
+    }
+}
@@ -0,0 +1,21 @@
+package com.tsulok.qrcodereader.helper;
+
+import java.io.File;
+
+public interface IPhotoSavedListener {
+
+    /**
+     * Called on the writer thread when a photo is on disk
+     * @param file The written file
+     * @param shutterTime The {@link System#nanoTime} the exposure of the photo started,
+     *                    0 if it is unknown
+     */
+    public void onPhotoSaved(File file, long shutterTime);
+
+    /**
+     * Called on the writer thread when a photo could not be written
+     * @param shutterTime The {@link System#nanoTime} the exposure of the photo started,
+     *                    0 if it is unknown
+     */
+    public void onPhotoFailed(long shutterTime);
+}
@@ -0,0 +1,337 @@
+package com.tsulok.qrcodereader.helper;
+
+import android.graphics.ImageFormat;
+import android.graphics.Rect;
+import android.graphics.YuvImage;
+import android.media.ExifInterface;
+import android.media.Image;
+import android.util.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingDeque;
+
+/**
+ * Saves the captured JPEGs on its own thread, so slow storage never stalls the camera thread.
+ * Each photo is copied into one of a fixed number of pooled direct buffers and the image is
+ * released right away. The writer then writes it straight from that buffer through a
+ * {@link FileChannel}. When every buffer is in use the writer is full, new photos are rejected
+ * instead of queueing up without bound.
+ * YUV frames are copied the same way and encoded to JPEG on the writer thread.
+ */
+public class PhotoWriter {
+
+    private static final String TAG = "PhotoWriter";
+
+    private static final String FILE_PREFIX = "IMG_";
+    private static final String FILE_EXTENSION = ".jpg";
+
+    private static final int JPEG_QUALITY = 95;
+
+    /**
+     * A photo is a buffer holding its data and the time it was captured
+     */
+    private static final class Photo {
+        ByteBuffer data;
+        long captureTime;
+        long shutterTime;
+
+        /**
+         * An NV21 frame to encode first, if the width is not 0
+         */
+        byte[] yuv;
+        int yuvWidth;
+        int yuvHeight;
+        int orientation;
+    }
+
+    /**
+     * Exposes its buffer, so the encoded JPEG is written without another copy
+     */
+    private static final class JpegOutputStream extends ByteArrayOutputStream {
+        ByteBuffer asByteBuffer() {
+            return ByteBuffer.wrap(buf, 0, count);
+        }
+    }
+
+    /**
+     * Queued by {@link #shutdown} after the waiting photos
+     */
+    private static final Photo STOP = new Photo();
+
+    /**
+     * Used as a stack, so the same few buffers are reused while the others stay unallocated
+     */
+    private final BlockingDeque<Photo> freePhotos;
+    private final BlockingQueue<Photo> pendingPhotos;
+    private volatile boolean running = true;
+    private volatile IPhotoSavedListener listener;
+
+    /**
+     * Only used on the writer thread
+     */
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyyMMdd_HHmmss_SSS", Locale.US);
+    private final JpegOutputStream jpegOutput = new JpegOutputStream();
+
+    /**
+     * The chroma rows of {@link #copyAsNv21}, only used on the thread submitting the YUV frames
+     */
+    private byte[] uRow = new byte[0];
+    private byte[] vRow = new byte[0];
+
+    /**
+     * @param capacity The number of photos which can wait for being written
+     */
+    public PhotoWriter(int capacity) {
+        freePhotos = new LinkedBlockingDeque<>(capacity);
+        pendingPhotos = new ArrayBlockingQueue<>(capacity + 1);
+        for (int i = 0; i < capacity; i++) {
+            freePhotos.add(new Photo());
+        }
+        Thread writerThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                writeLoop();
+            }
+        }, TAG);
+        writerThread.setPriority(Thread.NORM_PRIORITY - 1);
+        writerThread.start();
+    }
+
+    public void setListener(IPhotoSavedListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Whether a new photo would be accepted now
+     */
+    public boolean hasCapacity() {
+        return !freePhotos.isEmpty();
+    }
+
+    /**
+     * @return The number of photos which would be accepted now
+     */
+    public int getFreeCount() {
+        return freePhotos.size();
+    }
+
+    /**
+     * Copies the JPEG of the image for writing, the caller may close the image afterwards
+     * @param shutterTime The {@link System#nanoTime} the exposure started, 0 if it is unknown
+     * @return False if the writer is full or stopped, the photo is dropped then
+     */
+    public boolean submit(Image image, long shutterTime) {
+        Photo photo = running ? freePhotos.pollFirst() : null;
+        if (photo == null) {
+            return false;
+        }
+        photo.yuvWidth = 0;
+        ByteBuffer jpeg = image.getPlanes()[0].getBuffer();
+        if (photo.data == null || photo.data.capacity() < jpeg.remaining()) {
+            photo.data = ByteBuffer.allocateDirect(jpeg.remaining());
+        }
+        photo.data.clear();
+        photo.data.put(jpeg);
+        photo.data.flip();
+        photo.captureTime = System.currentTimeMillis();
+        photo.shutterTime = shutterTime;
+        pendingPhotos.add(photo);
+        return true;
+    }
+
+    /**
+     * Copies a YUV_420_888 frame for encoding and writing, the caller may close the image afterwards
+     * @param orientation The clockwise rotation of the frame for upright display in degrees,
+     *                    stored in the EXIF data
+     * @param shutterTime The {@link System#nanoTime} the exposure started, 0 if it is unknown
+     * @return False if the writer is full or stopped, the photo is dropped then
+     */
+    public boolean submitYuv(Image image, int orientation, long shutterTime) {
+        Photo photo = running ? freePhotos.pollFirst() : null;
+        if (photo == null) {
+            return false;
+        }
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int size = yuvBytesFor(width, height);
+        if (photo.yuv == null || photo.yuv.length < size) {
+            photo.yuv = new byte[size];
+        }
+        copyAsNv21(image, photo.yuv);
+        photo.yuvWidth = width;
+        photo.yuvHeight = height;
+        photo.orientation = orientation;
+        photo.captureTime = System.currentTimeMillis();
+        photo.shutterTime = shutterTime;
+        pendingPhotos.add(photo);
+        return true;
+    }
+
+    /**
+     * @return The bytes a YUV frame of the size takes in a slot of the writer, every slot keeps its copy
+     */
+    public static int yuvBytesFor(int width, int height) {
+        return width * height * 3 / 2;
+    }
+
+    /**
+     * Writes the waiting photos, then stops the writer thread
+     */
+    public void shutdown() {
+        running = false;
+        pendingPhotos.offer(STOP);
+    }
+
+    private void writeLoop() {
+        while (true) {
+            Photo photo;
+            try {
+                photo = pendingPhotos.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (photo == STOP) {
+                return;
+            }
+            long shutterTime = photo.shutterTime;
+            File file = null;
+            try {
+                file = write(photo);
+            } catch (IOException e) {
+                Log.e(TAG, "Could not save photo", e);
+            } finally {
+                freePhotos.offerFirst(photo);
+            }
+            notifyListener(file, shutterTime);
+        }
+    }
+
+    private void notifyListener(File file, long shutterTime) {
+        if (file != null && shutterTime > 0) {
+            Log.d(TAG, String.format(Locale.US, "Saved %s, %.1f ms after the shutter", file.getName(),
+                    (System.nanoTime() - shutterTime) / 1e6));
+        }
+        IPhotoSavedListener listener = this.listener;
+        if (listener == null) {
+            return;
+        }
+        if (file != null) {
+            listener.onPhotoSaved(file, shutterTime);
+        } else {
+            listener.onPhotoFailed(shutterTime);
+        }
+    }
+
+    private File write(Photo photo) throws IOException {
+        ByteBuffer data = photo.data;
+        if (photo.yuvWidth != 0) {
+            jpegOutput.reset();
+            YuvImage yuvImage = new YuvImage(photo.yuv, ImageFormat.NV21, photo.yuvWidth, photo.yuvHeight, null);
+            if (!yuvImage.compressToJpeg(new Rect(0, 0, photo.yuvWidth, photo.yuvHeight),
+                    JPEG_QUALITY, jpegOutput)) {
+                throw new IOException("Could not encode frame");
+            }
+            data = jpegOutput.asByteBuffer();
+        }
+        File file = createFile(photo.captureTime);
+        FileOutputStream output = new FileOutputStream(file);
+        try {
+            FileChannel channel = output.getChannel();
+            while (data.hasRemaining()) {
+                channel.write(data);
+            }
+        } finally {
+            output.close();
+        }
+        if (photo.yuvWidth != 0) {
+            writeOrientation(file, photo.orientation);
+        }
+        return file;
+    }
+
+    /**
+     * The encoded frames are not rotated, the viewers rotate them by their EXIF orientation
+     */
+    private static void writeOrientation(File file, int orientation) throws IOException {
+        int exifOrientation;
+        switch ((orientation % 360 + 360) % 360) {
+            case 90:
+                exifOrientation = ExifInterface.ORIENTATION_ROTATE_90;
+                break;
+            case 180:
+                exifOrientation = ExifInterface.ORIENTATION_ROTATE_180;
+                break;
+            case 270:
+                exifOrientation = ExifInterface.ORIENTATION_ROTATE_270;
+                break;
+            default:
+                exifOrientation = ExifInterface.ORIENTATION_NORMAL;
+                break;
+        }
+        ExifInterface exif = new ExifInterface(file.getPath());
+        exif.setAttribute(ExifInterface.TAG_ORIENTATION, Integer.toString(exifOrientation));
+        exif.saveAttributes();
+    }
+
+    /**
+     * Copies a YUV_420_888 image into the NV21 layout: the luma rows, then interleaved V and U
+     */
+    private void copyAsNv21(Image image, byte[] nv21) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        Image.Plane[] planes = image.getPlanes();
+
+        ByteBuffer luma = planes[0].getBuffer();
+        int lumaRowStride = planes[0].getRowStride();
+        for (int row = 0; row < height; row++) {
+            luma.position(row * lumaRowStride);
+            luma.get(nv21, row * width, width);
+        }
+
+        // U and V share their strides
+        ByteBuffer u = planes[1].getBuffer();
+        ByteBuffer v = planes[2].getBuffer();
+        int chromaRowStride = planes[2].getRowStride();
+        int chromaPixelStride = planes[2].getPixelStride();
+        int chromaWidth = width / 2;
+        int rowLength = (chromaWidth - 1) * chromaPixelStride + 1;
+        if (uRow.length < rowLength) {
+            uRow = new byte[rowLength];
+            vRow = new byte[rowLength];
+        }
+        int offset = width * height;
+        for (int row = 0; row < height / 2; row++) {
+            u.position(row * chromaRowStride);
+            u.get(uRow, 0, rowLength);
+            v.position(row * chromaRowStride);
+            v.get(vRow, 0, rowLength);
+            for (int col = 0; col < rowLength; col += chromaPixelStride) {
+                nv21[offset++] = vRow[col];
+                nv21[offset++] = uRow[col];
+            }
+        }
+    }
+
+    /**
+     * Creates a new file named after the capture time, with a counter if that name is taken
+     */
+    private File createFile(long captureTime) throws IOException {
+        String name = FILE_PREFIX + dateFormat.format(new Date(captureTime));
+        File file = StorageHelper.getExternalStorageFile(name + FILE_EXTENSION);
+        for (int i = 1; !file.createNewFile(); i++) {
+            file = StorageHelper.getExternalStorageFile(name + "_" + i + FILE_EXTENSION);
+        }
+        return file;
+    }
+}
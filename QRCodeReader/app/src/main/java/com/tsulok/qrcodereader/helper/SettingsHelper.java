@@ -0,0 +1,53 @@
+package com.tsulok.qrcodereader.helper;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import com.tsulok.qrcodereader.App;
+import com.tsulok.qrcodereader.scan.ScanProfile;
+
+/**
+ * Settings persisted across launches
+ */
+public class SettingsHelper {
+
+    private static final String PREFERENCES_NAME = "settings";
+    private static final String KEY_SCAN_PROFILE = "scan_profile";
+    private static final String KEY_ZERO_SHUTTER_LAG = "zero_shutter_lag";
+    private static final String KEY_ZSL_MEMORY_LIMIT_MB = "zsl_memory_limit_mb";
+
+    /**
+     * The last selected scan profile, QR only by default
+     */
+    public static ScanProfile getScanProfile() {
+        return ScanProfile.fromName(getPreferences().getString(KEY_SCAN_PROFILE, null),
+                ScanProfile.QR_ONLY);
+    }
+
+    public static void saveScanProfile(ScanProfile profile) {
+        getPreferences().edit().putString(KEY_SCAN_PROFILE, profile.name()).apply();
+    }
+
+    public static boolean isZeroShutterLagEnabled() {
+        return getPreferences().getBoolean(KEY_ZERO_SHUTTER_LAG, false);
+    }
+
+    public static void saveZeroShutterLag(boolean enabled) {
+        getPreferences().edit().putBoolean(KEY_ZERO_SHUTTER_LAG, enabled).apply();
+    }
+
+    /**
+     * The memory the zero shutter lag frames may use in megabytes
+     */
+    public static int getZslMemoryLimitMb() {
+        return getPreferences().getInt(KEY_ZSL_MEMORY_LIMIT_MB, CameraConstants.ZSL_DEFAULT_MEMORY_LIMIT_MB);
+    }
+
+    public static void saveZslMemoryLimitMb(int limitMb) {
+        getPreferences().edit().putInt(KEY_ZSL_MEMORY_LIMIT_MB, limitMb).apply();
+    }
+
+    private static SharedPreferences getPreferences() {
+        return App.getAppContext().getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+    }
+}
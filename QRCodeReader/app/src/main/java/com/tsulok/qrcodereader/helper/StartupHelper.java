@@ -0,0 +1,134 @@
+package com.tsulok.qrcodereader.helper;
+
+import android.content.Context;
+import android.hardware.camera2.CameraAccessException;
+import android.hardware.camera2.CameraManager;
+import android.os.Process;
+import android.util.Log;
+
+import com.tsulok.qrcodereader.App;
+import com.tsulok.qrcodereader.scan.BarcodeEngine;
+import com.tsulok.qrcodereader.scan.IBarcodeEngine;
+import com.tsulok.qrcodereader.scan.LumaFrame;
+
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The cold start pipeline.
+ * Loading the native libraries, the first scan, the camera configuration and the scan history are
+ * done on a background thread right from {@link App#onCreate}, while the activity and its views are created,
+ * and the time from launch to the first preview frame and to the first found code is logged.
+ */
+public class StartupHelper {
+
+    private static final String TAG = "StartupHelper";
+
+    /**
+     * The side of the blank frame the warm up scan runs on
+     */
+    private static final int WARMUP_FRAME_SIZE = 64;
+
+    private static final CountDownLatch scannerReady = new CountDownLatch(1);
+    private static final AtomicBoolean firstPreviewFrame = new AtomicBoolean();
+    private static final AtomicBoolean firstDecode = new AtomicBoolean();
+
+    private static long launchTime;
+    private static volatile BarcodeEngine barcodeEngine;
+
+    /**
+     * Called once from {@link App#onCreate}, starts the clock and the warm up
+     */
+    public static void onLaunch() {
+        launchTime = System.nanoTime();
+        Thread prewarm = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                // The decode workers and the camera wait for these two, so they run at the default priority
+                prewarmScanner();
+                prewarmCameraConfig();
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                HistoryHelper.getLog();
+            }
+        }, "StartupPrewarm");
+        prewarm.start();
+    }
+
+    /**
+     * The engine to decode with, waits for the warm up if it is still loading the native library.
+     * Must not be called on the main thread.
+     */
+    public static BarcodeEngine getBarcodeEngine() {
+        try {
+            scannerReady.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return barcodeEngine != null ? barcodeEngine : BarcodeEngine.preferred();
+    }
+
+    /**
+     * Logs the time to the first preview frame on screen, later calls do nothing
+     */
+    public static void onFirstPreviewFrame() {
+        if (firstPreviewFrame.compareAndSet(false, true)) {
+            Log.i(TAG, formatSinceLaunch("Launch to first preview frame"));
+        }
+    }
+
+    /**
+     * Logs the time to the first found code, later calls do nothing
+     */
+    public static void onFirstDecode() {
+        if (firstDecode.compareAndSet(false, true)) {
+            Log.i(TAG, formatSinceLaunch("Launch to first decode"));
+        }
+    }
+
+    /**
+     * Loads the native libraries and runs one scan, so the first real frame
+     * does not pay for the class loading and the page faults of the decoder
+     */
+    private static void prewarmScanner() {
+        long start = System.nanoTime();
+        try {
+            // zbar depends on it, and older linkers do not resolve the dependencies of app libraries
+            System.loadLibrary("iconv");
+        } catch (UnsatisfiedLinkError e) {
+            Log.w(TAG, "iconv is not available", e);
+        }
+        BarcodeEngine engine = BarcodeEngine.preferred();
+        try {
+            IBarcodeEngine warmup = engine.create();
+            warmup.configure(SettingsHelper.getScanProfile());
+            LumaFrame frame = new LumaFrame(WARMUP_FRAME_SIZE * WARMUP_FRAME_SIZE);
+            frame.setSize(WARMUP_FRAME_SIZE, WARMUP_FRAME_SIZE);
+            warmup.decode(frame, 1);
+            warmup.destroy();
+            Log.d(TAG, String.format(Locale.US, "%s scanner warmed up in %.1f ms", engine,
+                    (System.nanoTime() - start) / 1e6));
+        } catch (RuntimeException | LinkageError e) {
+            // The decode workers fall back to ZXing when they cannot create the engine
+            Log.e(TAG, engine + " scanner failed to warm up", e);
+        } finally {
+            barcodeEngine = engine;
+            scannerReady.countDown();
+        }
+    }
+
+    private static void prewarmCameraConfig() {
+        CameraManager cameraManager =
+                (CameraManager) App.getAppContext().getSystemService(Context.CAMERA_SERVICE);
+        try {
+            CameraConfigCache.get(cameraManager);
+        } catch (CameraAccessException | RuntimeException e) {
+            // Queried again when the camera is opened
+            Log.e(TAG, "Camera config could not be loaded", e);
+        }
+    }
+
+    private static String formatSinceLaunch(String event) {
+        return String.format(Locale.US, "%s: %.0f ms", event, (System.nanoTime() - launchTime) / 1e6);
+    }
+}
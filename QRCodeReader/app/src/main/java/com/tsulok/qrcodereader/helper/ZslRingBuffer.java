@@ -0,0 +1,137 @@
+package com.tsulok.qrcodereader.helper;
+
+import android.media.Image;
+import android.media.ImageReader;
+
+import com.tsulok.qrcodereader.scan.LumaPlane;
+import com.tsulok.qrcodereader.scan.SharpnessGate;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Zero shutter lag: keeps the last frames of a full resolution YUV stream, so a photo
+ * is taken from a frame exposed around the press instead of a capture started after it.
+ * The images are the buffers of the {@link ImageReader}, the oldest one is closed and
+ * so recycled before the next frame is acquired. The reader therefore needs
+ * {@link #getMaxImages} images, the memory use is capped by the capacity.
+ */
+public class ZslRingBuffer implements ImageReader.OnImageAvailableListener {
+
+    /**
+     * A buffered image with its arrival and sharpness
+     */
+    private static final class Frame {
+        Image image;
+        long arrivalTime;
+        float sharpness;
+    }
+
+    private final int capacity;
+    private final List<Frame> frames;
+    private final ArrayDeque<Frame> freeFrames;
+    private final LumaPlane lumaPlane = new LumaPlane();
+    private boolean closed;
+
+    /**
+     * @param capacity The number of frames kept
+     */
+    public ZslRingBuffer(int capacity) {
+        this.capacity = Math.max(1, capacity);
+        this.frames = new ArrayList<>(this.capacity);
+        this.freeFrames = new ArrayDeque<>(this.capacity);
+        for (int i = 0; i < this.capacity; i++) {
+            freeFrames.add(new Frame());
+        }
+    }
+
+    /**
+     * The number of YUV_420_888 frames of the size which fit into the memory limit
+     */
+    public static int capacityFor(int width, int height, long memoryLimit) {
+        long frameBytes = (long) width * height * 3 / 2;
+        return (int) Math.min(Integer.MAX_VALUE, memoryLimit / frameBytes);
+    }
+
+    /**
+     * @return The images the reader of the stream has to allow
+     */
+    public int getMaxImages() {
+        return capacity;
+    }
+
+    /**
+     * Called on the camera thread, replaces the oldest frame with the new one
+     */
+    @Override
+    public synchronized void onImageAvailable(ImageReader reader) {
+        if (closed) {
+            return;
+        }
+        // Free the oldest buffer first, the reader cannot hand out more than its max images
+        if (frames.size() >= capacity) {
+            recycle(frames.remove(0));
+        }
+        Image image = reader.acquireNextImage();
+        if (image == null) {
+            return;
+        }
+        Frame frame = freeFrames.poll();
+        frame.image = image;
+        frame.arrivalTime = System.nanoTime();
+        Image.Plane yPlane = image.getPlanes()[0];
+        lumaPlane.wrap(yPlane.getBuffer(), image.getWidth(), image.getHeight(),
+                yPlane.getRowStride(), yPlane.getPixelStride());
+        frame.sharpness = SharpnessGate.score(lumaPlane);
+        lumaPlane.clear();
+        frames.add(frame);
+    }
+
+    /**
+     * Removes the frame to save from the buffer, the caller has to close it.
+     * @param pressTime The {@link System#nanoTime} the shutter was pressed
+     * @param candidates The sharpest of this many frames up to the one nearest the press is chosen,
+     *                   1 takes the nearest one
+     * @return The image, or null if no frame has arrived yet
+     */
+    public synchronized Image take(long pressTime, int candidates) {
+        if (frames.isEmpty()) {
+            return null;
+        }
+        int nearest = 0;
+        for (int i = 1; i < frames.size(); i++) {
+            if (Math.abs(frames.get(i).arrivalTime - pressTime)
+                    < Math.abs(frames.get(nearest).arrivalTime - pressTime)) {
+                nearest = i;
+            }
+        }
+        int chosen = nearest;
+        for (int i = Math.max(0, nearest - candidates + 1); i < nearest; i++) {
+            if (frames.get(i).sharpness > frames.get(chosen).sharpness) {
+                chosen = i;
+            }
+        }
+        Frame frame = frames.remove(chosen);
+        Image image = frame.image;
+        frame.image = null;
+        freeFrames.add(frame);
+        return image;
+    }
+
+    /**
+     * Closes every buffered frame and ignores the later ones, before the reader is closed
+     */
+    public synchronized void close() {
+        closed = true;
+        while (!frames.isEmpty()) {
+            recycle(frames.remove(frames.size() - 1));
+        }
+    }
+
+    private void recycle(Frame frame) {
+        frame.image.close();
+        frame.image = null;
+        freeFrames.add(frame);
+    }
+}
@@ -0,0 +1,136 @@
+package com.tsulok.qrcodereader.batch;
+
+import com.tsulok.qrcodereader.scan.BarcodeEngine;
+import com.tsulok.qrcodereader.scan.DecodedSymbol;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Headless batch decoder for directories of archived photos.
+ * Images are decoded in parallel on a work-stealing pool, one decoder per worker thread,
+ * and the results are printed as they finish, tab separated: file, symbology, data, latency.
+ * Throughput and latency percentiles are printed at the end.
+ *
+ * The engine is zbar when its JNI library (libzbarjni) built for the host is on
+ * {@code java.library.path}, the pure Java ZXing otherwise, unless one is given.
+ *
+ * Usage: BatchDecoder directory [threads] [zbar|zxing]
+ */
+public class BatchDecoder {
+
+    private static final List<String> EXTENSIONS = Arrays.asList(".jpg", ".jpeg", ".png", ".bmp");
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 1) {
+            System.err.println("Usage: BatchDecoder directory [threads] [zbar|zxing]");
+            System.exit(1);
+        }
+        Path directory = Paths.get(args[0]);
+        int threads = args.length > 1
+                ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        BarcodeEngine engine = args.length > 2
+                ? BarcodeEngine.valueOf(args[2].toUpperCase(Locale.US)) : BarcodeEngine.preferred();
+
+        List<File> files = listImages(directory);
+        System.err.println("Decoding " + files.size() + " images on " + threads + " threads with " + engine);
+
+        ForkJoinPool pool = new ForkJoinPool(threads, new DecoderThread.Factory(engine), null, true);
+        CompletionService<BatchResult> completionService = new ExecutorCompletionService<>(pool);
+
+        long start = System.nanoTime();
+        for (File file : files) {
+            completionService.submit(new DecodeTask(file));
+        }
+
+        long[] latencies = new long[files.size()];
+        int decoded = 0;
+        int failed = 0;
+        for (int i = 0; i < files.size(); i++) {
+            BatchResult result;
+            try {
+                result = completionService.take().get();
+            } catch (ExecutionException e) {
+                e.printStackTrace();
+                failed++;
+                continue;
+            }
+            latencies[i] = result.getLatencyNanos();
+            if (result.getError() != null) {
+                failed++;
+                System.err.println(result.getFile() + "\t" + result.getError());
+            } else if (result.getSymbol() != null) {
+                decoded++;
+                print(result);
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+
+        pool.shutdown();
+        pool.awaitTermination(10, TimeUnit.SECONDS);
+
+        printSummary(files.size(), decoded, failed, elapsed, latencies);
+    }
+
+    /**
+     * Collects the image files under the directory, recursively
+     */
+    private static List<File> listImages(Path directory) throws IOException {
+        final List<File> files = new ArrayList<>();
+        Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                String name = file.getFileName().toString().toLowerCase(Locale.US);
+                for (String extension : EXTENSIONS) {
+                    if (name.endsWith(extension)) {
+                        files.add(file.toFile());
+                        break;
+                    }
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return files;
+    }
+
+    private static void print(BatchResult result) {
+        DecodedSymbol symbol = result.getSymbol();
+        System.out.println(result.getFile() + "\t" + symbol.getType() + "\t" + symbol.getData()
+                + "\t" + String.format(Locale.US, "%.1f", result.getLatencyNanos() / 1e6));
+    }
+
+    private static void printSummary(int total, int decoded, int failed, long elapsedNanos, long[] latencies) {
+        Arrays.sort(latencies);
+        double seconds = elapsedNanos / 1e9;
+        System.err.println(String.format(Locale.US,
+                "%d images, %d decoded, %d failed in %.2f s, %.1f images/s",
+                total, decoded, failed, seconds, total / seconds));
+        if (latencies.length > 0) {
+            System.err.println(String.format(Locale.US,
+                    "Latency ms: min %.1f, p50 %.1f, p95 %.1f, p99 %.1f, max %.1f",
+                    latencies[0] / 1e6, percentile(latencies, 0.50) / 1e6,
+                    percentile(latencies, 0.95) / 1e6, percentile(latencies, 0.99) / 1e6,
+                    latencies[latencies.length - 1] / 1e6));
+        }
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+}
@@ -0,0 +1,48 @@
+package com.tsulok.qrcodereader.batch;
+
+import com.tsulok.qrcodereader.scan.DecodedSymbol;
+
+import java.io.File;
+
+/**
+ * The outcome of decoding one image file
+ */
+public class BatchResult {
+
+    private final File file;
+    private final DecodedSymbol symbol;
+    private final Exception error;
+    private final long latencyNanos;
+
+    public BatchResult(File file, DecodedSymbol symbol, Exception error, long latencyNanos) {
+        this.file = file;
+        this.symbol = symbol;
+        this.error = error;
+        this.latencyNanos = latencyNanos;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * @return The found symbol, or null if the image contained no code or failed
+     */
+    public DecodedSymbol getSymbol() {
+        return symbol;
+    }
+
+    /**
+     * @return The error which made the image fail, or null
+     */
+    public Exception getError() {
+        return error;
+    }
+
+    /**
+     * @return The time spent on loading and decoding the image
+     */
+    public long getLatencyNanos() {
+        return latencyNanos;
+    }
+}
@@ -0,0 +1,31 @@
+package com.tsulok.qrcodereader.batch;
+
+import com.tsulok.qrcodereader.scan.DecodedSymbol;
+
+import java.io.File;
+import java.util.concurrent.Callable;
+
+/**
+ * Loads and decodes one image on a {@link DecoderThread}
+ */
+public class DecodeTask implements Callable<BatchResult> {
+
+    private final File file;
+
+    public DecodeTask(File file) {
+        this.file = file;
+    }
+
+    @Override
+    public BatchResult call() {
+        DecoderThread worker = DecoderThread.current();
+        long start = System.nanoTime();
+        try {
+            worker.setRowBuffer(ImageLumaLoader.load(file, worker.getFrame(), worker.getRowBuffer()));
+            DecodedSymbol symbol = worker.getDecoder().decode(worker.getFrame());
+            return new BatchResult(file, symbol, null, System.nanoTime() - start);
+        } catch (Exception e) {
+            return new BatchResult(file, null, e, System.nanoTime() - start);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.tsulok.qrcodereader.batch;
+
+import com.tsulok.qrcodereader.scan.BarcodeEngine;
+import com.tsulok.qrcodereader.scan.LumaFrame;
+import com.tsulok.qrcodereader.scan.PyramidDecoder;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+/**
+ * Fork-join worker owning its decoder and buffers, as the decoders are not thread safe
+ */
+public class DecoderThread extends ForkJoinWorkerThread {
+
+    /**
+     * Archived photos are large, a 4x coarse pass finds most codes.
+     * Every coarse miss is followed by a full resolution scan of the same image.
+     */
+    private static final int PYRAMID_FACTOR = 4;
+
+    private final BarcodeEngine engine;
+    private PyramidDecoder decoder;
+    private final LumaFrame frame = new LumaFrame(0);
+    private int[] rowBuffer;
+
+    protected DecoderThread(ForkJoinPool pool, BarcodeEngine engine) {
+        super(pool);
+        this.engine = engine;
+    }
+
+    /**
+     * Returns the worker running the current task
+     */
+    public static DecoderThread current() {
+        return (DecoderThread) Thread.currentThread();
+    }
+
+    @Override
+    protected void onTermination(Throwable exception) {
+        if (decoder != null) {
+            decoder.destroy();
+        }
+        super.onTermination(exception);
+    }
+
+    /**
+     * Creates the decoder on first use, within a task, so a missing native library
+     * fails the task instead of the worker thread
+     */
+    public PyramidDecoder getDecoder() {
+        if (decoder == null) {
+            decoder = new PyramidDecoder(engine.create(), PYRAMID_FACTOR, 1);
+        }
+        return decoder;
+    }
+
+    public LumaFrame getFrame() {
+        return frame;
+    }
+
+    public int[] getRowBuffer() {
+        return rowBuffer;
+    }
+
+    public void setRowBuffer(int[] rowBuffer) {
+        this.rowBuffer = rowBuffer;
+    }
+
+    public static final class Factory implements ForkJoinPool.ForkJoinWorkerThreadFactory {
+
+        private final BarcodeEngine engine;
+
+        public Factory(BarcodeEngine engine) {
+            this.engine = engine;
+        }
+
+        @Override
+        public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+            return new DecoderThread(pool, engine);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.tsulok.qrcodereader.batch;
+
+import com.tsulok.qrcodereader.scan.LumaFrame;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Loads image files into luma frames
+ */
+public class ImageLumaLoader {
+
+    private ImageLumaLoader() {}
+
+    /**
+     * Reads an image and converts it to luma
+     * @param file The image file, any format supported by ImageIO
+     * @param frame The destination, resized if needed
+     * @param row A scratch buffer for one row of pixels, at least as long as the image width
+     * @return The scratch buffer, replaced if it was too short
+     * @throws IOException if the file can not be read or is not an image
+     */
+    public static int[] load(File file, LumaFrame frame, int[] row) throws IOException {
+        BufferedImage image = ImageIO.read(file);
+        if (image == null) {
+            throw new IOException("Unsupported image format: " + file);
+        }
+
+        int width = image.getWidth();
+        int height = image.getHeight();
+        if (row == null || row.length < width) {
+            row = new int[width];
+        }
+        frame.ensureCapacity(width * height);
+        frame.setSize(width, height);
+        frame.setOrigin(0, 0);
+
+        byte[] data = frame.getData();
+        for (int y = 0; y < height; y++) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            int offset = y * width;
+            for (int x = 0; x < width; x++) {
+                int rgb = row[x];
+                // BT.601 luma in fixed point
+                int luma = (77 * ((rgb >> 16) & 0xff) + 150 * ((rgb >> 8) & 0xff) + 29 * (rgb & 0xff)) >> 8;
+                data[offset + x] = (byte) luma;
+            }
+        }
+        return row;
+    }
+}
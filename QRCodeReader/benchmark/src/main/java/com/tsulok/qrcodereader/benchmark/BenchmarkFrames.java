@@ -0,0 +1,123 @@
+package com.tsulok.qrcodereader.benchmark;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.QRCodeWriter;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Random;
+
+/**
+ * Luma frames for the benchmarks.
+ * Recorded frames are raw Y800 dumps, looked up in the directory given by the
+ * {@code frames.dir} system property by their resolution in the file name,
+ * e.g. {@code counter_1920x1080.y}. Without a recorded frame a synthetic one is generated.
+ */
+public class BenchmarkFrames {
+
+    public static final String FRAMES_DIR_PROPERTY = "frames.dir";
+
+    /**
+     * The payload of the synthetic code, long enough for a version 3 (29 modules) QR code
+     */
+    public static final String PAYLOAD = "https://example.com/qrcodereader/benchmark/frame";
+
+    private static final long SEED = 42;
+
+    private BenchmarkFrames() {}
+
+    /**
+     * @param resolution In the form of {@code 1920x1080}
+     * @return {width, height}
+     */
+    public static int[] parseResolution(String resolution) {
+        String[] parts = resolution.split("x");
+        return new int[]{Integer.parseInt(parts[0]), Integer.parseInt(parts[1])};
+    }
+
+    /**
+     * Loads a recorded frame of the given size, or generates a synthetic one
+     * @return Tightly packed luma bytes
+     */
+    public static byte[] load(int width, int height) throws IOException {
+        String directory = System.getProperty(FRAMES_DIR_PROPERTY);
+        if (directory != null) {
+            File[] files = new File(directory).listFiles();
+            if (files != null) {
+                String size = width + "x" + height;
+                for (File file : files) {
+                    String name = file.getName();
+                    if (name.contains(size) && name.endsWith(".y") && file.length() >= width * height) {
+                        byte[] data = Files.readAllBytes(file.toPath());
+                        byte[] frame = new byte[width * height];
+                        System.arraycopy(data, 0, frame, 0, frame.length);
+                        return frame;
+                    }
+                }
+            }
+        }
+        return synthetic(width, height);
+    }
+
+    /**
+     * A lit gradient background with sensor noise and a real QR code of {@link #PAYLOAD}
+     * in the middle, covering about a third of the shorter side
+     */
+    public static byte[] synthetic(int width, int height) {
+        Random random = new Random(SEED);
+        byte[] frame = new byte[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int value = 120 + 60 * x / width + 40 * y / height + random.nextInt(9) - 4;
+                frame[y * width + x] = (byte) value;
+            }
+        }
+
+        BitMatrix modules = encode(PAYLOAD);
+        int moduleCount = modules.getWidth();
+        int moduleSize = Math.max(1, Math.min(width, height) / 3 / moduleCount);
+        int left = (width - moduleCount * moduleSize) / 2;
+        int top = (height - moduleCount * moduleSize) / 2;
+        for (int my = 0; my < moduleCount; my++) {
+            for (int mx = 0; mx < moduleCount; mx++) {
+                byte value = (byte) (modules.get(mx, my) ? 30 : 220);
+                for (int y = 0; y < moduleSize; y++) {
+                    int offset = (top + my * moduleSize + y) * width + left + mx * moduleSize;
+                    for (int x = 0; x < moduleSize; x++) {
+                        frame[offset + x] = value;
+                    }
+                }
+            }
+        }
+        return frame;
+    }
+
+    /**
+     * Puts a packed frame into a direct buffer like the ones of {@code Image.Plane}
+     * @param rowStride The distance of the rows, at least the width
+     */
+    public static ByteBuffer toPlane(byte[] luma, int width, int height, int rowStride) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(rowStride * (height - 1) + width);
+        for (int y = 0; y < height; y++) {
+            buffer.position(y * rowStride);
+            buffer.put(luma, y * width, width);
+        }
+        buffer.rewind();
+        return buffer;
+    }
+
+    /**
+     * The modules of the code with a 4 module quiet zone, one bit per module
+     */
+    private static BitMatrix encode(String payload) {
+        try {
+            return new QRCodeWriter().encode(payload, BarcodeFormat.QR_CODE, 0, 0);
+        } catch (WriterException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
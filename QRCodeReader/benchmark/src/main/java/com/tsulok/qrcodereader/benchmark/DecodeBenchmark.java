@@ -0,0 +1,88 @@
+package com.tsulok.qrcodereader.benchmark;
+
+import com.tsulok.qrcodereader.scan.BarcodeEngine;
+import com.tsulok.qrcodereader.scan.DecodedSymbol;
+import com.tsulok.qrcodereader.scan.IBarcodeEngine;
+import com.tsulok.qrcodereader.scan.LumaFrame;
+import com.tsulok.qrcodereader.scan.LumaPlane;
+import com.tsulok.qrcodereader.scan.PyramidDecoder;
+import com.tsulok.qrcodereader.scan.ScanRegion;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding a frame with each engine.
+ * The zbar runs need the zbar JNI library of the host on {@code java.library.path}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DecodeBenchmark {
+
+    @Param({"640x480", "1280x720", "1920x1080"})
+    public String resolution;
+
+    @Param({"ZBAR", "ZXING"})
+    public BarcodeEngine engine;
+
+    private final LumaFrame frame = new LumaFrame(0);
+    private final LumaFrame regionFrame = new LumaFrame(0);
+    private IBarcodeEngine decoder;
+    private PyramidDecoder pyramidDecoder;
+
+    @Setup
+    public void setUp() throws IOException {
+        int[] size = BenchmarkFrames.parseResolution(resolution);
+        byte[] luma = BenchmarkFrames.load(size[0], size[1]);
+        ByteBuffer buffer = BenchmarkFrames.toPlane(luma, size[0], size[1], size[0]);
+        LumaPlane plane = new LumaPlane();
+        plane.wrap(buffer, size[0], size[1], size[0], 1);
+        plane.copyTo(frame);
+
+        ScanRegion region = new ScanRegion(0);
+        region.set(0.2f, 0.2f, 0.8f, 0.8f);
+        region.copy(plane, regionFrame);
+
+        decoder = engine.create();
+        pyramidDecoder = new PyramidDecoder(engine.create(), 2, 4);
+    }
+
+    @TearDown
+    public void tearDown() {
+        decoder.destroy();
+        pyramidDecoder.destroy();
+    }
+
+    @Benchmark
+    public DecodedSymbol fullFrame() {
+        return decoder.decode(frame, 1);
+    }
+
+    @Benchmark
+    public DecodedSymbol viewfinderRegion() {
+        return decoder.decode(regionFrame, 1);
+    }
+
+    @Benchmark
+    public DecodedSymbol pyramid() {
+        return pyramidDecoder.decode(frame);
+    }
+}
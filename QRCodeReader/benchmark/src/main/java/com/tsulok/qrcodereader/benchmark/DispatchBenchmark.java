@@ -0,0 +1,76 @@
+package com.tsulok.qrcodereader.benchmark;
+
+import com.tsulok.qrcodereader.scan.DecodedSymbol;
+import com.tsulok.qrcodereader.scan.LumaFrame;
+import com.tsulok.qrcodereader.scan.ResultDeduplicator;
+import com.tsulok.qrcodereader.scan.SymbolTracker;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Handling a decoded symbol: de-duplication and tracking
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DispatchBenchmark {
+
+    private static final int DISTINCT_PAYLOADS = 1024;
+    private static final long FRAME_NANOS = 33000000L;
+
+    private final ResultDeduplicator deduplicator = new ResultDeduplicator(5000, 64);
+    private final SymbolTracker symbolTracker = new SymbolTracker(3);
+    private final LumaFrame frame = new LumaFrame(0);
+    private final int[] window = new int[4];
+    private final String[] payloads = new String[DISTINCT_PAYLOADS];
+    private DecodedSymbol symbol;
+    private int next;
+    private long timestamp;
+
+    @Setup
+    public void setUp() {
+        for (int i = 0; i < payloads.length; i++) {
+            payloads[i] = "https://example.com/item/" + i;
+        }
+        symbol = new DecodedSymbol(64, payloads[0], 800, 400, 240, 240);
+    }
+
+    /**
+     * A code staying in view
+     */
+    @Benchmark
+    public boolean duplicatePayload() {
+        return deduplicator.isNew(payloads[0]);
+    }
+
+    /**
+     * Always a different code, with evictions
+     */
+    @Benchmark
+    public boolean newPayload() {
+        next = (next + 1) % DISTINCT_PAYLOADS;
+        return deduplicator.isNew(payloads[next]);
+    }
+
+    @Benchmark
+    public boolean trackAndPredict() {
+        timestamp += FRAME_NANOS;
+        frame.setTimestamp(timestamp);
+        symbolTracker.update(frame, symbol);
+        return symbolTracker.predict(timestamp + FRAME_NANOS, 1920, 1080, window);
+    }
+}
@@ -0,0 +1,89 @@
+package com.tsulok.qrcodereader.benchmark;
+
+import com.tsulok.qrcodereader.scan.LumaFrame;
+import com.tsulok.qrcodereader.scan.LumaPlane;
+import com.tsulok.qrcodereader.scan.ScanRegion;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Copying the Y plane out of the camera buffer
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LumaExtractionBenchmark {
+
+    @Param({"640x480", "1280x720", "1920x1080"})
+    public String resolution;
+
+    /**
+     * Extra bytes at the end of every row, as some camera HALs align the rows
+     */
+    @Param({"0", "64"})
+    public int rowPadding;
+
+    private ByteBuffer buffer;
+    private final LumaPlane plane = new LumaPlane();
+    private final LumaFrame frame = new LumaFrame(0);
+    private final ScanRegion region = new ScanRegion(0);
+    private int width;
+    private int height;
+
+    @Setup
+    public void setUp() throws IOException {
+        int[] size = BenchmarkFrames.parseResolution(resolution);
+        width = size[0];
+        height = size[1];
+        buffer = BenchmarkFrames.toPlane(BenchmarkFrames.load(width, height), width, height, width + rowPadding);
+        frame.ensureCapacity(width * height);
+        region.set(0.2f, 0.2f, 0.8f, 0.8f);
+    }
+
+    /**
+     * The copy used before LumaPlane: a new array with the whole buffer, padding included
+     */
+    @Benchmark
+    public byte[] wholeBufferCopy() {
+        buffer.rewind();
+        byte[] data = new byte[buffer.remaining()];
+        buffer.get(data);
+        return data;
+    }
+
+    @Benchmark
+    public LumaFrame planeCopy() {
+        buffer.rewind();
+        plane.wrap(buffer, width, height, width + rowPadding, 1);
+        plane.copyTo(frame);
+        return frame;
+    }
+
+    /**
+     * Only the centered 60% viewfinder region
+     */
+    @Benchmark
+    public LumaFrame regionCopy() {
+        buffer.rewind();
+        plane.wrap(buffer, width, height, width + rowPadding, 1);
+        region.copy(plane, frame);
+        return frame;
+    }
+}
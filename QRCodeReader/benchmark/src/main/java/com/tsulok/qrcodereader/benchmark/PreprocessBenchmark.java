@@ -0,0 +1,74 @@
+package com.tsulok.qrcodereader.benchmark;
+
+import com.tsulok.qrcodereader.scan.LumaDownsampler;
+import com.tsulok.qrcodereader.scan.LumaFrame;
+import com.tsulok.qrcodereader.scan.LumaPlane;
+import com.tsulok.qrcodereader.scan.SceneChangeDetector;
+import com.tsulok.qrcodereader.scan.SharpnessGate;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The work done on a frame before it reaches the decoder
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PreprocessBenchmark {
+
+    @Param({"640x480", "1280x720", "1920x1080"})
+    public String resolution;
+
+    private final LumaPlane plane = new LumaPlane();
+    private final LumaFrame frame = new LumaFrame(0);
+    private final LumaFrame coarseFrame = new LumaFrame(0);
+    private final SceneChangeDetector sceneChangeDetector = new SceneChangeDetector(6f, 0);
+
+    @Setup
+    public void setUp() throws IOException {
+        int[] size = BenchmarkFrames.parseResolution(resolution);
+        byte[] luma = BenchmarkFrames.load(size[0], size[1]);
+        ByteBuffer buffer = BenchmarkFrames.toPlane(luma, size[0], size[1], size[0]);
+        plane.wrap(buffer, size[0], size[1], size[0], 1);
+        plane.copyTo(frame);
+    }
+
+    @Benchmark
+    public LumaFrame downsample2x() {
+        LumaDownsampler.downsample(frame, coarseFrame, 2);
+        return coarseFrame;
+    }
+
+    @Benchmark
+    public LumaFrame downsample4x() {
+        LumaDownsampler.downsample(frame, coarseFrame, 4);
+        return coarseFrame;
+    }
+
+    @Benchmark
+    public float sharpnessScore() {
+        return SharpnessGate.score(plane);
+    }
+
+    @Benchmark
+    public boolean sceneChange() {
+        return sceneChangeDetector.accept(plane);
+    }
+}
@@ -0,0 +1,197 @@
+package com.tsulok.qrcodereader.scan;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Chooses the resolution of the analysis stream for decoding, independently of the preview.
+ * The decode cost grows with the pixel count, while a code only needs a few pixels per module,
+ * so the smallest size is used at which the expected code of the {@link ScanProfile} still gets
+ * {@link #MIN_PIXELS_PER_MODULE}.
+ *
+ * The size then follows the results: codes which were detected but failed to decode step up to
+ * the next size, as the code may be smaller or farther than expected. A detection is a scan of the
+ * window of a tracked code, see {@link SymbolTracker}. Frames without any code in view change
+ * nothing, so an idle scanner keeps its size. Codes found with plenty of pixels per module step
+ * down again. Every change recreates the capture session, so the number of changes is capped until
+ * the sizes or the profile are set again.
+ * Fed by the decode workers, read by the camera thread.
+ */
+public class AnalysisSizePolicy {
+
+    /**
+     * Pixels per module the decoders reliably need, at least two plus margin for blur and perspective
+     */
+    private static final float MIN_PIXELS_PER_MODULE = 3f;
+
+    /**
+     * A found code allows the next smaller size when it would still have this many times the minimum there
+     */
+    private static final float DOWNGRADE_MARGIN = 1.5f;
+
+    /**
+     * Codes found in a row with the downgrade margin before stepping down
+     */
+    private static final int HITS_BEFORE_DOWNGRADE = 5;
+
+    /**
+     * Size changes allowed between two restarts
+     */
+    private static final int MAX_SIZE_CHANGES = 4;
+
+    private final int failuresBeforeUpgrade;
+
+    /**
+     * Candidate {width, height} pairs, ascending by area
+     */
+    private final List<int[]> sizes = new ArrayList<>();
+    private ScanProfile profile = ScanProfile.QR_ONLY;
+    private int baseLevel;
+    private int level;
+    private int sizeChanges;
+    private volatile int version;
+
+    private int failures;
+    private int roomyHits;
+
+    /**
+     * @param failuresBeforeUpgrade Scans of a detected code without a hit before the next larger size is used
+     */
+    public AnalysisSizePolicy(int failuresBeforeUpgrade) {
+        this.failuresBeforeUpgrade = Math.max(1, failuresBeforeUpgrade);
+    }
+
+    /**
+     * Sets the sizes the camera supports for the analysis stream.
+     * Only the ones with the aspect ratio of the preview are used, so the analysis frames show the same
+     * field of view, and none larger than the preview, which was the analysis size before.
+     * @param supported The supported {width, height} pairs
+     * @param previewWidth The width of the preview stream
+     * @param previewHeight The height of the preview stream
+     */
+    public synchronized void setSupportedSizes(List<int[]> supported, int previewWidth, int previewHeight) {
+        sizes.clear();
+        for (int[] size : supported) {
+            boolean sameAspect = (long) size[0] * previewHeight == (long) size[1] * previewWidth;
+            if (sameAspect && size[0] <= previewWidth && size[1] <= previewHeight) {
+                sizes.add(new int[]{size[0], size[1]});
+            }
+        }
+        if (sizes.isEmpty()) {
+            sizes.add(new int[]{previewWidth, previewHeight});
+        }
+        Collections.sort(sizes, new Comparator<int[]>() {
+            @Override
+            public int compare(int[] lhs, int[] rhs) {
+                return Long.signum((long) lhs[0] * lhs[1] - (long) rhs[0] * rhs[1]);
+            }
+        });
+        restart();
+    }
+
+    /**
+     * Sets the expected code, the base size is recomputed and used from now on
+     */
+    public synchronized void setScanProfile(ScanProfile profile) {
+        this.profile = profile;
+        restart();
+    }
+
+    /**
+     * @return The width the analysis stream should have now
+     */
+    public synchronized int getWidth() {
+        return sizes.isEmpty() ? 0 : sizes.get(level)[0];
+    }
+
+    /**
+     * @return The height the analysis stream should have now
+     */
+    public synchronized int getHeight() {
+        return sizes.isEmpty() ? 0 : sizes.get(level)[1];
+    }
+
+    /**
+     * Changes whenever the size may have changed, cheap enough to be checked on every frame
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Adapts the size to the outcome of a decoded frame
+     * @param frame The scanned frame
+     * @param symbol The found code, or null
+     */
+    public synchronized void update(LumaFrame frame, DecodedSymbol symbol) {
+        if (sizes.isEmpty()) {
+            return;
+        }
+        if (symbol != null) {
+            onHit(symbol);
+        } else if (frame.isTracked()) {
+            // A code was in the window but did not decode, untargeted misses may just have nothing in view
+            roomyHits = 0;
+            onFailure();
+        }
+    }
+
+    private void onHit(DecodedSymbol symbol) {
+        if (level == 0) {
+            return;
+        }
+        float pixelsPerModule = (float) Math.max(symbol.getWidth(), symbol.getHeight())
+                / profile.getExpectedModules();
+        float lowerScale = (float) shorterSide(sizes.get(level - 1)) / shorterSide(sizes.get(level));
+        if (pixelsPerModule * lowerScale >= MIN_PIXELS_PER_MODULE * DOWNGRADE_MARGIN) {
+            if (++roomyHits >= HITS_BEFORE_DOWNGRADE) {
+                changeLevel(level - 1);
+            }
+        } else {
+            roomyHits = 0;
+        }
+    }
+
+    private void onFailure() {
+        if (++failures >= failuresBeforeUpgrade && level < sizes.size() - 1) {
+            changeLevel(level + 1);
+        }
+    }
+
+    private void changeLevel(int newLevel) {
+        failures = 0;
+        roomyHits = 0;
+        if (sizeChanges >= MAX_SIZE_CHANGES) {
+            return;
+        }
+        sizeChanges++;
+        level = newLevel;
+        version++;
+    }
+
+    /**
+     * Goes back to the smallest size giving the expected code enough pixels per module
+     */
+    private void restart() {
+        int required = (int) Math.ceil(profile.getExpectedModules() * MIN_PIXELS_PER_MODULE
+                / profile.getExpectedCodeFraction());
+        baseLevel = sizes.size() - 1;
+        for (int i = 0; i < sizes.size(); i++) {
+            if (shorterSide(sizes.get(i)) >= required) {
+                baseLevel = i;
+                break;
+            }
+        }
+        level = Math.max(0, baseLevel);
+        sizeChanges = 0;
+        failures = 0;
+        roomyHits = 0;
+        version++;
+    }
+
+    private static int shorterSide(int[] size) {
+        return Math.min(size[0], size[1]);
+    }
+}
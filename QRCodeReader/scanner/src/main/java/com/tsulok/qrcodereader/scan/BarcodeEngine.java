@@ -0,0 +1,54 @@
+package com.tsulok.qrcodereader.scan;
+
+/**
+ * The available {@link IBarcodeEngine} implementations
+ */
+public enum BarcodeEngine {
+
+    /**
+     * The native zbar library, only where libzbarjni is shipped
+     */
+    ZBAR {
+        @Override
+        public IBarcodeEngine create() {
+            return new ZBarEngine();
+        }
+
+        @Override
+        public boolean isAvailable() {
+            return ZBarEngine.isNativeAvailable();
+        }
+    },
+
+    /**
+     * The pure Java ZXing decoder, runs on every ABI and on desktop JVMs
+     */
+    ZXING {
+        @Override
+        public IBarcodeEngine create() {
+            return new ZXingEngine();
+        }
+
+        @Override
+        public boolean isAvailable() {
+            return true;
+        }
+    };
+
+    /**
+     * Creates a new engine instance for a decoding thread
+     */
+    public abstract IBarcodeEngine create();
+
+    /**
+     * Whether the engine can run on this platform
+     */
+    public abstract boolean isAvailable();
+
+    /**
+     * zbar where its native library is available, ZXing otherwise
+     */
+    public static BarcodeEngine preferred() {
+        return ZBAR.isAvailable() ? ZBAR : ZXING;
+    }
+}
@@ -0,0 +1,285 @@
+package com.tsulok.qrcodereader.scan;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decode stage of the preview pipeline.
+ * Runs a fixed number of worker threads, each owning its own {@link PyramidDecoder}
+ * over its own instance of the chosen {@link BarcodeEngine}.
+ * Frames are handed over through a {@link LatestFrameSlot}, so a slow scan never blocks
+ * the camera thread, it only makes older frames get dropped.
+ * Every code of a frame is delivered in one call to the listener.
+ */
+public class DecodeExecutor {
+
+    private static final String THREAD_NAME = "QRDecoder-";
+    private static final int MAX_WORKERS = 4;
+    private static final long JOIN_TIMEOUT_MS = 1000;
+
+    /**
+     * Coarse passes missed in a row before a frame is scanned at full resolution
+     */
+    private static final int FULL_RESOLUTION_AFTER_MISSES = 4;
+
+    private final IBarcodeEngineSource engineSource;
+    private final int workerCount;
+    private final int pyramidFactor;
+    private final SymbolTracker symbolTracker;
+    private final ScanMetrics scanMetrics;
+    private final IDecodeListener decodeListener;
+
+    private volatile ScanProfile scanProfile = ScanProfile.QR_ONLY;
+    private volatile AnalysisSizePolicy sizePolicy;
+    private volatile LumaBufferPool bufferPool;
+    private volatile LatestFrameSlot frameSlot;
+    private Thread[] workers;
+
+    /**
+     * @param engine The engine the workers decode with
+     * @param workerCount The number of decode threads
+     * @param pyramidFactor The downsampling factor of the coarse pass, 1 scans only at full resolution
+     * @param symbolTracker Updated with the outcome of every frame, may be null
+     * @param scanMetrics Records the queue, decode and dispatch latencies, may be null
+     * @param decodeListener Notified on the worker threads about found codes
+     */
+    public DecodeExecutor(final BarcodeEngine engine, int workerCount, int pyramidFactor, SymbolTracker symbolTracker,
+                          ScanMetrics scanMetrics, IDecodeListener decodeListener) {
+        this(new IBarcodeEngineSource() {
+            @Override
+            public BarcodeEngine getBarcodeEngine() {
+                return engine;
+            }
+        }, workerCount, pyramidFactor, symbolTracker, scanMetrics, decodeListener);
+    }
+
+    /**
+     * @param engineSource Asked for the engine on the worker threads, so the caller never waits for it
+     * @param workerCount The number of decode threads
+     * @param pyramidFactor The downsampling factor of the coarse pass, 1 scans only at full resolution
+     * @param symbolTracker Updated with the outcome of every frame, may be null
+     * @param scanMetrics Records the queue, decode and dispatch latencies, may be null
+     * @param decodeListener Notified on the worker threads about found codes
+     */
+    public DecodeExecutor(IBarcodeEngineSource engineSource, int workerCount, int pyramidFactor,
+                          SymbolTracker symbolTracker, ScanMetrics scanMetrics, IDecodeListener decodeListener) {
+        this.engineSource = engineSource;
+        this.workerCount = Math.max(1, workerCount);
+        this.pyramidFactor = Math.max(1, pyramidFactor);
+        this.symbolTracker = symbolTracker;
+        this.scanMetrics = scanMetrics;
+        this.decodeListener = decodeListener;
+    }
+
+    /**
+     * The default number of workers: one core is left for the camera and the UI
+     */
+    public static int defaultWorkerCount() {
+        int cores = Runtime.getRuntime().availableProcessors();
+        return Math.max(1, Math.min(MAX_WORKERS, cores - 1));
+    }
+
+    /**
+     * Switches the profile of the running workers, each applies it before its next frame
+     */
+    public void setScanProfile(ScanProfile scanProfile) {
+        this.scanProfile = scanProfile;
+    }
+
+    public ScanProfile getScanProfile() {
+        return scanProfile;
+    }
+
+    /**
+     * @param sizePolicy Updated with the outcome of every frame, may be null
+     */
+    public void setSizePolicy(AnalysisSizePolicy sizePolicy) {
+        this.sizePolicy = sizePolicy;
+    }
+
+    /**
+     * Allocates the frame pool and starts the workers
+     * @param frameSize The expected size of a luma frame in bytes
+     */
+    public synchronized void start(int frameSize) {
+        if (workers != null) {
+            return;
+        }
+        // Every worker may hold a frame, plus one waiting in the slot and one being filled
+        bufferPool = new LumaBufferPool(workerCount + 2, frameSize);
+        frameSlot = new LatestFrameSlot();
+        workers = new Thread[workerCount];
+        for (int i = 0; i < workerCount; i++) {
+            workers[i] = new Worker(THREAD_NAME + i, frameSlot, bufferPool);
+            workers[i].start();
+        }
+    }
+
+    /**
+     * Stops the workers and waits for the running scans to finish
+     */
+    public synchronized void stop() {
+        if (workers == null) {
+            return;
+        }
+        bufferPool.release(frameSlot.close());
+        for (Thread worker : workers) {
+            try {
+                worker.join(JOIN_TIMEOUT_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        workers = null;
+    }
+
+    /**
+     * Takes a free frame to be filled by the camera thread
+     * @param size The required buffer size in bytes
+     * @return The frame, or null if the executor is stopped or every frame is in use
+     */
+    public LumaFrame acquireFrame(int size) {
+        LumaBufferPool pool = bufferPool;
+        return pool != null ? pool.acquire(size) : null;
+    }
+
+    /**
+     * Gives back a frame which will not be submitted
+     */
+    public void releaseFrame(LumaFrame frame) {
+        LumaBufferPool pool = bufferPool;
+        if (pool != null) {
+            pool.release(frame);
+        }
+    }
+
+    /**
+     * Hands a filled frame over to the workers. Never blocks, an older frame still
+     * waiting for a worker is dropped.
+     */
+    public void submit(LumaFrame frame) {
+        frame.setSubmitTime(System.nanoTime());
+        LumaFrame replaced = frameSlot.offer(frame);
+        if (replaced != null && scanMetrics != null) {
+            scanMetrics.onFrameDropped();
+        }
+        releaseFrame(replaced);
+    }
+
+    private final class Worker extends Thread {
+
+        private final LatestFrameSlot slot;
+        private final LumaBufferPool pool;
+
+        Worker(String name, LatestFrameSlot slot, LumaBufferPool pool) {
+            super(name);
+            this.slot = slot;
+            this.pool = pool;
+        }
+
+        @Override
+        public void run() {
+            IBarcodeEngine barcodeEngine = createEngine();
+            if (barcodeEngine == null) {
+                return;
+            }
+            PyramidDecoder frameDecoder = new PyramidDecoder(barcodeEngine,
+                    pyramidFactor, FULL_RESOLUTION_AFTER_MISSES);
+            ScanProfile appliedProfile = null;
+            List<DecodedSymbol> symbols = new ArrayList<>();
+            try {
+                LumaFrame frame;
+                while ((frame = slot.take()) != null) {
+                    symbols.clear();
+                    try {
+                        ScanProfile profile = scanProfile;
+                        if (profile != appliedProfile) {
+                            barcodeEngine.configure(profile);
+                            appliedProfile = profile;
+                        }
+                        long decodeStart = System.nanoTime();
+                        frameDecoder.decodeAll(frame, symbols);
+                        for (int i = symbols.size() - 1; i >= 0; i--) {
+                            if (!profile.accepts(symbols.get(i))) {
+                                symbols.remove(i);
+                            }
+                        }
+                        if (scanMetrics != null) {
+                            scanMetrics.record(ScanMetrics.Stage.QUEUE, decodeStart - frame.getSubmitTime());
+                            scanMetrics.record(ScanMetrics.Stage.DECODE, System.nanoTime() - decodeStart);
+                            if (!symbols.isEmpty()) {
+                                scanMetrics.onFrameDecoded();
+                            }
+                        }
+                        if (symbolTracker != null) {
+                            symbolTracker.update(frame, symbols.isEmpty() ? null : symbols.get(0));
+                        }
+                        AnalysisSizePolicy policy = sizePolicy;
+                        if (policy != null) {
+                            policy.update(frame, smallest(symbols));
+                        }
+                    } catch (RuntimeException e) {
+                        // A failing frame must not stop the worker
+                        reportError(e);
+                    } finally {
+                        pool.release(frame);
+                    }
+                    if (!symbols.isEmpty() && decodeListener != null) {
+                        long dispatchStart = System.nanoTime();
+                        decodeListener.onDecoded(symbols);
+                        if (scanMetrics != null) {
+                            scanMetrics.record(ScanMetrics.Stage.DISPATCH, System.nanoTime() - dispatchStart);
+                        }
+                    }
+                }
+            } catch (InterruptedException e) {
+                // Stopped
+            } finally {
+                frameDecoder.destroy();
+            }
+        }
+
+        /**
+         * Falls back to ZXing if the chosen engine cannot be created, its native library may be broken
+         * @return The engine, or null if no engine can be created
+         */
+        private IBarcodeEngine createEngine() {
+            BarcodeEngine engine = null;
+            try {
+                engine = engineSource.getBarcodeEngine();
+                return engine.create();
+            } catch (RuntimeException | LinkageError e) {
+                reportError(e);
+            }
+            if (engine != BarcodeEngine.ZXING) {
+                try {
+                    return BarcodeEngine.ZXING.create();
+                } catch (RuntimeException e) {
+                    reportError(e);
+                }
+            }
+            return null;
+        }
+
+        private void reportError(Throwable error) {
+            if (decodeListener != null) {
+                decodeListener.onError(error);
+            }
+        }
+    }
+
+    /**
+     * The resolution has to suit the smallest code of the frame
+     * @return The smallest symbol, or null if there is none
+     */
+    private static DecodedSymbol smallest(List<DecodedSymbol> symbols) {
+        DecodedSymbol smallest = null;
+        for (DecodedSymbol symbol : symbols) {
+            if (smallest == null || Math.max(symbol.getWidth(), symbol.getHeight())
+                    < Math.max(smallest.getWidth(), smallest.getHeight())) {
+                smallest = symbol;
+            }
+        }
+        return smallest;
+    }
+}
@@ -0,0 +1,115 @@
+package com.tsulok.qrcodereader.scan;
+
+/**
+ * A code found in a camera frame.
+ * The bounds are in full frame coordinates, whatever region or resolution was scanned.
+ */
+public class DecodedSymbol {
+
+    /**
+     * The sequence of a code which is not a structured append part
+     */
+    public static final int NO_SEQUENCE = -1;
+
+    private final int type;
+    private final String data;
+    private final byte[] rawBytes;
+    private final int left;
+    private final int top;
+    private final int width;
+    private final int height;
+    private final int sequence;
+    private final int parity;
+
+    /**
+     * @param type The symbology, one of the zbar {@code Symbol} constants
+     * @param data The decoded data
+     */
+    public DecodedSymbol(int type, String data, int left, int top, int width, int height) {
+        this(type, data, left, top, width, height, null, NO_SEQUENCE, 0);
+    }
+
+    /**
+     * @param rawBytes The bytes encoded in the code, null if the engine does not report them
+     * @param sequence The position of a structured append part in the high, the number of parts - 1
+     *                 in the low nibble, or {@link #NO_SEQUENCE}
+     * @param parity The XOR of every data byte of the whole structured append sequence
+     */
+    public DecodedSymbol(int type, String data, int left, int top, int width, int height,
+                         byte[] rawBytes, int sequence, int parity) {
+        this.type = type;
+        this.data = data;
+        this.rawBytes = rawBytes;
+        this.left = left;
+        this.top = top;
+        this.width = width;
+        this.height = height;
+        this.sequence = sequence;
+        this.parity = parity;
+    }
+
+    public int getType() {
+        return type;
+    }
+
+    public String getData() {
+        return data;
+    }
+
+    /**
+     * The data before it was decoded as text, binary payloads are only intact here
+     * @return The bytes, or null if they are not known. Not to be modified.
+     */
+    public byte[] getRawBytes() {
+        return rawBytes;
+    }
+
+    public int getLeft() {
+        return left;
+    }
+
+    public int getTop() {
+        return top;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getCenterX() {
+        return left + width / 2;
+    }
+
+    public int getCenterY() {
+        return top + height / 2;
+    }
+
+    /**
+     * @return True if the data is only a part of a structured append sequence
+     */
+    public boolean isStructuredAppend() {
+        return sequence != NO_SEQUENCE;
+    }
+
+    /**
+     * @return The 0 based position of the part in its sequence
+     */
+    public int getSequenceIndex() {
+        return (sequence >> 4) & 0x0f;
+    }
+
+    /**
+     * @return The number of parts of the sequence
+     */
+    public int getSequenceLength() {
+        return (sequence & 0x0f) + 1;
+    }
+
+    public int getParity() {
+        return parity;
+    }
+}
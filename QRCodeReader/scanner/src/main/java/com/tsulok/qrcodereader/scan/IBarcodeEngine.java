@@ -0,0 +1,38 @@
+package com.tsulok.qrcodereader.scan;
+
+import java.util.List;
+
+/**
+ * A barcode decoding library behind the preview pipeline.
+ * Implementations are not expected to be thread safe, every decoding thread creates its own.
+ */
+public interface IBarcodeEngine {
+
+    /**
+     * Scans a frame for codes
+     * @param frame The luma frame to scan
+     * @param scale The downsampling factor of the frame, the bounds are scaled back by this
+     * @return The first found symbol in full frame coordinates, or null if nothing was found
+     */
+    DecodedSymbol decode(LumaFrame frame, int scale);
+
+    /**
+     * Scans a frame for every code in it, slower than {@link #decode} if there is only one
+     * @param frame The luma frame to scan
+     * @param scale The downsampling factor of the frame, the bounds are scaled back by this
+     * @param found The found symbols are added to it, in full frame coordinates
+     * @return The number of found symbols
+     */
+    int decodeAll(LumaFrame frame, int scale, List<DecodedSymbol> found);
+
+    /**
+     * Applies the symbologies and the density of a profile to the following scans.
+     * Engines without a scan density ignore it.
+     */
+    void configure(ScanProfile profile);
+
+    /**
+     * Releases the resources of the engine, it is not used afterwards
+     */
+    void destroy();
+}
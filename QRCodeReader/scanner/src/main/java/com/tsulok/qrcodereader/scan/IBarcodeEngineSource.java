@@ -0,0 +1,10 @@
+package com.tsulok.qrcodereader.scan;
+
+public interface IBarcodeEngineSource {
+
+    /**
+     * Called on each decode worker thread when it starts, may block until the engine is known
+     * @return The engine the worker decodes with
+     */
+    public BarcodeEngine getBarcodeEngine();
+}
@@ -0,0 +1,18 @@
+package com.tsulok.qrcodereader.scan;
+
+import java.util.List;
+
+public interface IDecodeListener {
+
+    /**
+     * Called on a decode worker thread when a frame contained codes
+     * @param symbols Every symbol found in the frame, reused by the worker after the call
+     */
+    public void onDecoded(List<DecodedSymbol> symbols);
+
+    /**
+     * Called on a decode worker thread when its engine could not be created or a frame failed
+     * @param error The cause, the worker goes on with the next frame if it has an engine
+     */
+    public void onError(Throwable error);
+}
@@ -0,0 +1,20 @@
+package com.tsulok.qrcodereader.scan;
+
+import java.util.List;
+
+public interface IPayloadListener {
+
+    /**
+     * Called on the parser thread of the {@link PayloadProcessor}
+     * @param symbols The submitted symbols which could be parsed
+     * @param payloads The parsed payload of each symbol, in the same order
+     */
+    public void onParsed(List<DecodedSymbol> symbols, List<ParsedPayload> payloads);
+
+    /**
+     * Called on the parser thread of the {@link PayloadProcessor} when a symbol could not be parsed
+     * @param symbol The symbol, left out of the results
+     * @param error The cause
+     */
+    public void onError(DecodedSymbol symbol, Throwable error);
+}
@@ -0,0 +1,51 @@
+package com.tsulok.qrcodereader.scan;
+
+/**
+ * Single element hand-off between the camera thread and the decode workers.
+ * A new frame always replaces the waiting one, so workers only ever see the latest frame.
+ */
+class LatestFrameSlot {
+
+    private LumaFrame pending;
+    private boolean closed;
+
+    /**
+     * Puts a frame into the slot without blocking
+     * @param frame The newest frame
+     * @return The frame which has been replaced and was never decoded, or null
+     */
+    synchronized LumaFrame offer(LumaFrame frame) {
+        if (closed) {
+            return frame;
+        }
+        LumaFrame replaced = pending;
+        pending = frame;
+        notify();
+        return replaced;
+    }
+
+    /**
+     * Waits for the next frame
+     * @return The latest frame, or null if the slot has been closed
+     */
+    synchronized LumaFrame take() throws InterruptedException {
+        while (pending == null && !closed) {
+            wait();
+        }
+        LumaFrame frame = pending;
+        pending = null;
+        return frame;
+    }
+
+    /**
+     * Wakes up every waiting worker and rejects further frames
+     * @return The frame left in the slot, or null
+     */
+    synchronized LumaFrame close() {
+        closed = true;
+        LumaFrame frame = pending;
+        pending = null;
+        notifyAll();
+        return frame;
+    }
+}
@@ -0,0 +1,46 @@
+package com.tsulok.qrcodereader.scan;
+
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Fixed size pool of {@link LumaFrame}s.
+ * All frames are allocated up front, acquiring and releasing does not allocate.
+ */
+public class LumaBufferPool {
+
+    private final ArrayBlockingQueue<LumaFrame> freeFrames;
+
+    /**
+     * @param capacity The number of frames in the pool
+     * @param frameSize The initial buffer size of each frame in bytes
+     */
+    public LumaBufferPool(int capacity, int frameSize) {
+        freeFrames = new ArrayBlockingQueue<>(capacity);
+        for (int i = 0; i < capacity; i++) {
+            freeFrames.offer(new LumaFrame(frameSize));
+        }
+    }
+
+    /**
+     * Takes a free frame from the pool
+     * @param size The required buffer size in bytes
+     * @return A frame with at least {@code size} bytes, or null if every frame is in use
+     */
+    public LumaFrame acquire(int size) {
+        LumaFrame frame = freeFrames.poll();
+        if (frame != null) {
+            frame.ensureCapacity(size);
+        }
+        return frame;
+    }
+
+    /**
+     * Gives back a previously acquired frame
+     * @param frame The frame which is no longer used
+     */
+    public void release(LumaFrame frame) {
+        if (frame != null) {
+            freeFrames.offer(frame);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.tsulok.qrcodereader.scan;
+
+/**
+ * Box filter downsampling of luma frames, used for the coarse pass of {@link PyramidDecoder}
+ */
+public class LumaDownsampler {
+
+    private LumaDownsampler() {}
+
+    /**
+     * Averages every {@code factor} x {@code factor} block of the source into one pixel.
+     * Leftover columns and rows at the right and bottom edges are dropped.
+     * @param src The full resolution frame
+     * @param dst The destination, resized if needed
+     * @param factor The downsampling factor, e.g. 2 or 4
+     */
+    public static void downsample(LumaFrame src, LumaFrame dst, int factor) {
+        int srcWidth = src.getWidth();
+        int dstWidth = srcWidth / factor;
+        int dstHeight = src.getHeight() / factor;
+        dst.ensureCapacity(dstWidth * dstHeight);
+        dst.setSize(dstWidth, dstHeight);
+        dst.setOrigin(src.getLeft(), src.getTop());
+
+        byte[] in = src.getData();
+        byte[] out = dst.getData();
+        int area = factor * factor;
+        int round = area / 2;
+
+        if (factor == 2) {
+            for (int y = 0; y < dstHeight; y++) {
+                int row0 = 2 * y * srcWidth;
+                int row1 = row0 + srcWidth;
+                int o = y * dstWidth;
+                for (int x = 0; x < dstWidth; x++) {
+                    int i = 2 * x;
+                    int sum = (in[row0 + i] & 0xff) + (in[row0 + i + 1] & 0xff)
+                            + (in[row1 + i] & 0xff) + (in[row1 + i + 1] & 0xff);
+                    out[o + x] = (byte) ((sum + 2) >> 2);
+                }
+            }
+            return;
+        }
+
+        for (int y = 0; y < dstHeight; y++) {
+            int o = y * dstWidth;
+            for (int x = 0; x < dstWidth; x++) {
+                int sum = 0;
+                int row = y * factor * srcWidth + x * factor;
+                for (int dy = 0; dy < factor; dy++) {
+                    for (int dx = 0; dx < factor; dx++) {
+                        sum += in[row + dx] & 0xff;
+                    }
+                    row += srcWidth;
+                }
+                out[o + x] = (byte) ((sum + round) / area);
+            }
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.tsulok.qrcodereader.scan;
+
+/**
+ * A reusable luma (Y800) buffer travelling through the decode pipeline.
+ * Pooled instances are owned by a {@link LumaBufferPool} and must be released after decoding.
+ */
+public class LumaFrame {
+
+    private byte[] data;
+    private int width;
+    private int height;
+    private int left;
+    private int top;
+    private long timestamp;
+    private boolean tracked;
+    private long submitTime;
+
+    public LumaFrame(int capacity) {
+        this.data = new byte[capacity];
+    }
+
+    /**
+     * Makes sure the backing buffer can hold at least {@code size} bytes.
+     * Only reallocates when the frame size grows, so steady-state frames reuse the same array.
+     * @param size The required buffer size in bytes
+     */
+    public void ensureCapacity(int size) {
+        if (data.length < size) {
+            data = new byte[size];
+        }
+    }
+
+    /**
+     * Sets the dimensions of the luma image currently stored in the buffer
+     * @param width The width in pixels
+     * @param height The height in pixels
+     */
+    public void setSize(int width, int height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Sets where the stored image starts in the full camera frame, when only a region was copied
+     * @param left The horizontal offset in pixels
+     * @param top The vertical offset in pixels
+     */
+    public void setOrigin(int left, int top) {
+        this.left = left;
+        this.top = top;
+    }
+
+    /**
+     * @param timestamp The capture time of the camera frame in nanoseconds
+     */
+    public void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    /**
+     * @param tracked True if only the window predicted by a {@link SymbolTracker} was copied
+     */
+    public void setTracked(boolean tracked) {
+        this.tracked = tracked;
+    }
+
+    /**
+     * @param submitTime The {@link System#nanoTime()} when the frame was handed to the workers
+     */
+    public void setSubmitTime(long submitTime) {
+        this.submitTime = submitTime;
+    }
+
+    public byte[] getData() {
+        return data;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getLeft() {
+        return left;
+    }
+
+    public int getTop() {
+        return top;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public boolean isTracked() {
+        return tracked;
+    }
+
+    public long getSubmitTime() {
+        return submitTime;
+    }
+}
@@ -0,0 +1,108 @@
+package com.tsulok.qrcodereader.scan;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Stride aware view of a luma (Y) plane backed by a {@link ByteBuffer}.
+ * Pixels can be read in place, or copied tightly packed into a {@link LumaFrame}.
+ * The instance is meant to be re-wrapped for every frame, it does not allocate.
+ */
+public class LumaPlane {
+
+    private ByteBuffer buffer;
+    private int base;
+    private int width;
+    private int height;
+    private int rowStride;
+    private int pixelStride;
+
+    /**
+     * Points this view at a new plane
+     * @param buffer The plane data, read from its current position
+     * @param width The width of the image in pixels
+     * @param height The height of the image in pixels
+     * @param rowStride The distance between the start of two rows in bytes
+     * @param pixelStride The distance between two pixels of a row in bytes
+     */
+    public void wrap(ByteBuffer buffer, int width, int height, int rowStride, int pixelStride) {
+        this.buffer = buffer;
+        this.base = buffer.position();
+        this.width = width;
+        this.height = height;
+        this.rowStride = rowStride;
+        this.pixelStride = pixelStride;
+    }
+
+    /**
+     * Releases the reference to the wrapped buffer
+     */
+    public void clear() {
+        buffer = null;
+    }
+
+    /**
+     * @return True if the rows follow each other without padding
+     */
+    public boolean isPacked() {
+        return pixelStride == 1 && rowStride == width;
+    }
+
+    /**
+     * Reads a pixel directly from the buffer
+     * @return The luma value in the range of 0-255
+     */
+    public int get(int x, int y) {
+        return buffer.get(base + y * rowStride + x * pixelStride) & 0xff;
+    }
+
+    /**
+     * Copies the whole plane into the frame without row padding
+     * @param frame The destination, its size is updated
+     */
+    public void copyTo(LumaFrame frame) {
+        copyRegionTo(frame, 0, 0, width, height);
+    }
+
+    /**
+     * Copies a rectangle of the plane into the frame without row padding.
+     * A packed plane is still copied, in one bulk read: the decoders need a byte array, and the
+     * camera image is closed right after the copy, so the workers cannot read the buffer itself.
+     * @param frame The destination, its size is set to the region's size
+     */
+    public void copyRegionTo(LumaFrame frame, int left, int top, int regionWidth, int regionHeight) {
+        frame.ensureCapacity(regionWidth * regionHeight);
+        frame.setSize(regionWidth, regionHeight);
+        frame.setOrigin(left, top);
+        byte[] dst = frame.getData();
+
+        if (isPacked() && left == 0 && regionWidth == width) {
+            // Rows are contiguous, a single bulk read is enough
+            buffer.position(base + top * rowStride);
+            buffer.get(dst, 0, regionWidth * regionHeight);
+        } else if (pixelStride == 1) {
+            // Skip the padding at the end of every row
+            for (int row = 0; row < regionHeight; row++) {
+                buffer.position(base + (top + row) * rowStride + left);
+                buffer.get(dst, row * regionWidth, regionWidth);
+            }
+        } else {
+            int offset = 0;
+            for (int row = 0; row < regionHeight; row++) {
+                int position = base + (top + row) * rowStride + left * pixelStride;
+                for (int col = 0; col < regionWidth; col++) {
+                    dst[offset++] = buffer.get(position);
+                    position += pixelStride;
+                }
+            }
+        }
+        buffer.position(base);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+}
@@ -0,0 +1,82 @@
+package com.tsulok.qrcodereader.scan;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The typed content of a code, created by the {@link PayloadParser}.
+ * The fields are split on the first access, a code which is never looked at is only recognized.
+ * Thread safe and unchanged afterwards, so one instance is shared by every sighting of the same code.
+ */
+public class ParsedPayload {
+
+    private final PayloadType type;
+    private final String text;
+    private final byte[] rawBytes;
+    private Map<String, String> fields;
+    private String displayText;
+
+    /**
+     * A payload split on the first access
+     */
+    ParsedPayload(PayloadType type, String text, byte[] rawBytes) {
+        this.type = type;
+        this.text = text;
+        this.rawBytes = rawBytes;
+    }
+
+    ParsedPayload(PayloadType type, String text, byte[] rawBytes, Map<String, String> fields, String displayText) {
+        this.type = type;
+        this.text = text;
+        this.rawBytes = rawBytes;
+        this.fields = Collections.unmodifiableMap(fields);
+        this.displayText = displayText;
+    }
+
+    public PayloadType getType() {
+        return type;
+    }
+
+    /**
+     * @return The data as the engine decoded it
+     */
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * @return The encoded bytes, or null if the engine did not report them. Not to be modified.
+     */
+    public byte[] getRawBytes() {
+        return rawBytes;
+    }
+
+    /**
+     * @param name One of the field names of {@link PayloadParser}, or a GS1 application identifier
+     * @return The value, or null if the payload has no such field
+     */
+    public String get(String name) {
+        return getFields().get(name);
+    }
+
+    /**
+     * @return The fields in the order of the payload
+     */
+    public synchronized Map<String, String> getFields() {
+        if (fields == null) {
+            Map<String, String> parsed = new LinkedHashMap<>();
+            displayText = PayloadParser.parseFields(type, text, rawBytes, parsed);
+            fields = Collections.unmodifiableMap(parsed);
+        }
+        return fields;
+    }
+
+    /**
+     * @return A one line summary to show the user
+     */
+    public synchronized String getDisplayText() {
+        getFields();
+        return displayText;
+    }
+}
@@ -0,0 +1,421 @@
+package com.tsulok.qrcodereader.scan;
+
+import net.sourceforge.zbar.Symbol;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Recognizes the common payload formats of codes and splits them into fields.
+ * Stateless, the {@link PayloadProcessor} runs it off the decode threads and caches the results.
+ */
+public class PayloadParser {
+
+    /**
+     * The address of a {@link PayloadType#URL}
+     */
+    public static final String URL = "URL";
+
+    /**
+     * The fields of a {@link PayloadType#WIFI}: network name, authentication type, password
+     * and whether the network is hidden
+     */
+    public static final String WIFI_SSID = "S";
+    public static final String WIFI_SECURITY = "T";
+    public static final String WIFI_PASSWORD = "P";
+    public static final String WIFI_HIDDEN = "H";
+
+    /**
+     * The fields of a {@link PayloadType#VCARD}, the first value of each property
+     */
+    public static final String VCARD_NAME = "FN";
+    public static final String VCARD_STRUCTURED_NAME = "N";
+    public static final String VCARD_ORGANIZATION = "ORG";
+    public static final String VCARD_PHONE = "TEL";
+    public static final String VCARD_EMAIL = "EMAIL";
+    public static final String VCARD_ADDRESS = "ADR";
+    public static final String VCARD_URL = "URL";
+
+    private static final String[] VCARD_FIELDS = {VCARD_NAME, VCARD_STRUCTURED_NAME, VCARD_ORGANIZATION,
+            VCARD_PHONE, VCARD_EMAIL, VCARD_ADDRESS, VCARD_URL};
+
+    /**
+     * The FNC1 separator of the variable length GS1 elements
+     */
+    private static final char GROUP_SEPARATOR = '\u001d';
+
+    /**
+     * The AIM symbology identifiers of the GS1 variants of Code 128, DataBar, Data Matrix and QR
+     */
+    private static final String[] GS1_PREFIXES = {"]C1", "]e0", "]d2", "]Q3"};
+
+    /**
+     * The longest variable length GS1 element value
+     */
+    private static final int GS1_MAX_VALUE_LENGTH = 90;
+
+    /**
+     * Bytes shown of a {@link PayloadType#BINARY}
+     */
+    private static final int BINARY_DISPLAY_BYTES = 32;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private PayloadParser() {
+    }
+
+    /**
+     * Recognizes the type of the payload, its fields are split on the first access.
+     * Only a GS1 element string is split here, as it is validated by splitting it.
+     * @param symbology The zbar {@code Symbol} type of the code
+     * @param text The decoded data
+     * @param rawBytes The encoded bytes, may be null
+     */
+    public static ParsedPayload parse(int symbology, String text, byte[] rawBytes) {
+        if (isBinary(rawBytes)) {
+            return new ParsedPayload(PayloadType.BINARY, text, rawBytes);
+        }
+        Map<String, String> fields = new LinkedHashMap<>();
+        if (isGs1(symbology, text) && parseGs1(text, fields)) {
+            return new ParsedPayload(PayloadType.GS1, text, rawBytes, fields, formatGs1(fields));
+        }
+        String upper = text.trim().toUpperCase(Locale.US);
+        if (upper.startsWith("HTTP://") || upper.startsWith("HTTPS://") || upper.startsWith("URLTO:")) {
+            return new ParsedPayload(PayloadType.URL, text, rawBytes);
+        }
+        if (upper.startsWith("WIFI:")) {
+            return new ParsedPayload(PayloadType.WIFI, text, rawBytes);
+        }
+        if (upper.startsWith("BEGIN:VCARD")) {
+            return new ParsedPayload(PayloadType.VCARD, text, rawBytes);
+        }
+        return new ParsedPayload(PayloadType.TEXT, text, rawBytes, fields, text);
+    }
+
+    /**
+     * Splits a payload recognized by {@link #parse(int, String, byte[])}
+     * @param fields Filled with the fields of the payload
+     * @return The display text of the payload
+     */
+    static String parseFields(PayloadType type, String text, byte[] rawBytes, Map<String, String> fields) {
+        String trimmed = text.trim();
+        switch (type) {
+            case BINARY:
+                return toHex(rawBytes);
+            case URL:
+                String url = trimmed.toUpperCase(Locale.US).startsWith("URLTO:") ? trimmed.substring(6) : trimmed;
+                fields.put(URL, url);
+                return percentDecode(url);
+            case WIFI:
+                parseWifi(trimmed.substring(5), fields);
+                String ssid = fields.get(WIFI_SSID);
+                return ssid != null ? ssid : text;
+            case VCARD:
+                parseVCard(trimmed, fields);
+                String name = fields.containsKey(VCARD_NAME) ? fields.get(VCARD_NAME) : fields.get(VCARD_STRUCTURED_NAME);
+                return name != null ? name : text;
+            default:
+                return text;
+        }
+    }
+
+    /**
+     * Control characters other than white space and the GS1 separator do not occur in text.
+     * Bytes above 0x7f are text if they are valid UTF-8, or Latin-1 without its C1 control characters.
+     */
+    static boolean isBinary(byte[] rawBytes) {
+        if (rawBytes == null) {
+            return false;
+        }
+        boolean ascii = true;
+        boolean latin1 = true;
+        for (byte b : rawBytes) {
+            if ((b >= 0 && b < 0x20 && b != '\t' && b != '\n' && b != '\r' && b != GROUP_SEPARATOR) || b == 0x7f) {
+                return true;
+            }
+            if (b < 0) {
+                ascii = false;
+                if ((b & 0xff) < 0xa0) {
+                    latin1 = false;
+                }
+            }
+        }
+        return !ascii && !latin1 && !isUtf8(rawBytes);
+    }
+
+    private static boolean isUtf8(byte[] bytes) {
+        try {
+            UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPORT)
+                    .onUnmappableCharacter(CodingErrorAction.REPORT)
+                    .decode(ByteBuffer.wrap(bytes));
+            return true;
+        } catch (CharacterCodingException e) {
+            return false;
+        }
+    }
+
+    private static boolean isGs1(int symbology, String text) {
+        if (symbology == Symbol.DATABAR || symbology == Symbol.DATABAR_EXP) {
+            return true;
+        }
+        for (String prefix : GS1_PREFIXES) {
+            if (text.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return (text.length() > 0 && text.charAt(0) == GROUP_SEPARATOR)
+                || (symbology == Symbol.CODE128
+                        && (text.indexOf(GROUP_SEPARATOR) >= 0 || text.startsWith("(")));
+    }
+
+    /**
+     * Splits an element string into application identifiers and values, either the bracketed
+     * human readable form or the plain one with separators after the variable length values
+     * @return False if the string is not a valid element string
+     */
+    private static boolean parseGs1(String text, Map<String, String> fields) {
+        int position = 0;
+        for (String prefix : GS1_PREFIXES) {
+            if (text.startsWith(prefix)) {
+                position = prefix.length();
+            }
+        }
+        if (text.startsWith("(", position)) {
+            return parseBracketedGs1(text.substring(position + 1), fields);
+        }
+        while (position < text.length()) {
+            if (text.charAt(position) == GROUP_SEPARATOR) {
+                position++;
+                continue;
+            }
+            int aiLength = gs1AiLength(text, position);
+            if (aiLength < 0 || position + aiLength > text.length()) {
+                return false;
+            }
+            String ai = text.substring(position, position + aiLength);
+            for (int i = 0; i < aiLength; i++) {
+                if (!Character.isDigit(ai.charAt(i))) {
+                    return false;
+                }
+            }
+            position += aiLength;
+            int fixedLength = gs1FixedValueLength(ai);
+            int end;
+            if (fixedLength > 0) {
+                end = position + fixedLength;
+                if (end > text.length()) {
+                    return false;
+                }
+            } else {
+                end = text.indexOf(GROUP_SEPARATOR, position);
+                if (end < 0) {
+                    end = text.length();
+                }
+                if (end - position > GS1_MAX_VALUE_LENGTH) {
+                    return false;
+                }
+            }
+            fields.put(ai, text.substring(position, end));
+            position = end;
+        }
+        return !fields.isEmpty();
+    }
+
+    /**
+     * Splits the human readable form, every identifier is checked like in the plain one
+     * @param text The element string after the first opening bracket
+     * @return False if the string is not a valid element string
+     */
+    private static boolean parseBracketedGs1(String text, Map<String, String> fields) {
+        for (String element : text.split("\\(", -1)) {
+            int end = element.indexOf(')');
+            if (end <= 0 || gs1AiLength(element, 0) != end) {
+                return false;
+            }
+            String ai = element.substring(0, end);
+            for (int i = 0; i < end; i++) {
+                if (!Character.isDigit(ai.charAt(i))) {
+                    return false;
+                }
+            }
+            String value = element.substring(end + 1);
+            int fixedLength = gs1FixedValueLength(ai);
+            if (fixedLength > 0 ? value.length() != fixedLength
+                    : value.isEmpty() || value.length() > GS1_MAX_VALUE_LENGTH) {
+                return false;
+            }
+            fields.put(ai, value);
+        }
+        return true;
+    }
+
+    /**
+     * The length of the application identifier, decided by its first digits
+     * @return The length, or -1 if there are not two digits at the position
+     */
+    private static int gs1AiLength(String text, int position) {
+        if (position + 2 > text.length() || !Character.isDigit(text.charAt(position))
+                || !Character.isDigit(text.charAt(position + 1))) {
+            return -1;
+        }
+        int prefix = Integer.parseInt(text.substring(position, position + 2));
+        if (prefix == 23 || prefix == 24 || prefix == 25 || (prefix >= 40 && prefix <= 49)) {
+            return 3;
+        }
+        if ((prefix >= 31 && prefix <= 36) || prefix == 39 || (prefix >= 80 && prefix <= 89)) {
+            return 4;
+        }
+        if (prefix == 70 || prefix == 72) {
+            // 7001-7040 and 7230-7242
+            return 4;
+        }
+        if (prefix >= 71 && prefix <= 79) {
+            // 710-717 national healthcare codes
+            return 3;
+        }
+        return 2;
+    }
+
+    /**
+     * The predefined value lengths of the GS1 general specifications
+     * @return The length, or 0 for a variable length value
+     */
+    private static int gs1FixedValueLength(String ai) {
+        int prefix = Integer.parseInt(ai.substring(0, 2));
+        if (prefix == 0) {
+            return 18;
+        }
+        if (prefix >= 1 && prefix <= 3) {
+            return 14;
+        }
+        if (prefix == 4) {
+            return 16;
+        }
+        if (prefix >= 11 && prefix <= 19) {
+            return 6;
+        }
+        if (prefix == 20) {
+            return 2;
+        }
+        if (prefix >= 31 && prefix <= 36) {
+            return 6;
+        }
+        if (prefix == 41) {
+            return 13;
+        }
+        return 0;
+    }
+
+    private static String formatGs1(Map<String, String> fields) {
+        StringBuilder text = new StringBuilder();
+        for (Map.Entry<String, String> field : fields.entrySet()) {
+            text.append('(').append(field.getKey()).append(')').append(field.getValue());
+        }
+        return text.toString();
+    }
+
+    /**
+     * Reads the {@code T:WPA;S:name;P:password;;} fields, special characters are escaped by a backslash
+     */
+    private static void parseWifi(String data, Map<String, String> fields) {
+        StringBuilder value = new StringBuilder();
+        String key = null;
+        for (int i = 0; i < data.length(); i++) {
+            char c = data.charAt(i);
+            if (c == '\\' && i + 1 < data.length()) {
+                value.append(data.charAt(++i));
+            } else if (c == ':' && key == null) {
+                key = value.toString().toUpperCase(Locale.US);
+                value.setLength(0);
+            } else if (c == ';') {
+                if (key != null && !fields.containsKey(key)) {
+                    fields.put(key, value.toString());
+                }
+                key = null;
+                value.setLength(0);
+            } else {
+                value.append(c);
+            }
+        }
+        if (key != null && !fields.containsKey(key)) {
+            fields.put(key, value.toString());
+        }
+    }
+
+    /**
+     * Reads the first value of the known properties, the parameters after the property name are ignored
+     */
+    private static void parseVCard(String data, Map<String, String> fields) {
+        // Folded lines continue with a space or a tab
+        String unfolded = data.replaceAll("\r?\n[ \t]", "");
+        for (String line : unfolded.split("\r?\n")) {
+            int colon = line.indexOf(':');
+            if (colon <= 0) {
+                continue;
+            }
+            String name = line.substring(0, colon);
+            int parameters = name.indexOf(';');
+            if (parameters >= 0) {
+                name = name.substring(0, parameters);
+            }
+            // Grouped properties look like item1.TEL
+            name = name.substring(name.lastIndexOf('.') + 1).toUpperCase(Locale.US);
+            for (String field : VCARD_FIELDS) {
+                if (field.equals(name) && !fields.containsKey(field)) {
+                    fields.put(field, unescapeVCard(line.substring(colon + 1)));
+                }
+            }
+        }
+    }
+
+    private static String unescapeVCard(String value) {
+        return value.replace("\\n", "\n").replace("\\N", "\n").replace("\\,", ",")
+                .replace("\\;", ";").replace("\\\\", "\\").replace(';', ' ').trim();
+    }
+
+    /**
+     * Decodes the %XX escapes as UTF-8, malformed escapes are kept as they are
+     */
+    static String percentDecode(String text) {
+        if (text.indexOf('%') < 0) {
+            return text;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(text.length());
+        int i = 0;
+        while (i < text.length()) {
+            int high = i + 2 < text.length() ? Character.digit(text.charAt(i + 1), 16) : -1;
+            int low = i + 2 < text.length() ? Character.digit(text.charAt(i + 2), 16) : -1;
+            if (text.charAt(i) == '%' && high >= 0 && low >= 0) {
+                bytes.write(high << 4 | low);
+                i += 3;
+            } else {
+                int length = Character.charCount(text.codePointAt(i));
+                byte[] encoded = text.substring(i, i + length).getBytes(UTF_8);
+                bytes.write(encoded, 0, encoded.length);
+                i += length;
+            }
+        }
+        return new String(bytes.toByteArray(), UTF_8);
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder();
+        for (int i = 0; i < Math.min(bytes.length, BINARY_DISPLAY_BYTES); i++) {
+            if (i > 0) {
+                hex.append(' ');
+            }
+            hex.append(String.format(Locale.US, "%02x", bytes[i] & 0xff));
+        }
+        if (bytes.length > BINARY_DISPLAY_BYTES) {
+            hex.append(" ...");
+        }
+        return hex.toString();
+    }
+}
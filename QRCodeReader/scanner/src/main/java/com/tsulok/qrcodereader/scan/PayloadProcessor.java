@@ -0,0 +1,160 @@
+package com.tsulok.qrcodereader.scan;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Result stage of the preview pipeline.
+ * The found codes are recognized by the {@link PayloadParser} on an own thread, so neither the camera
+ * nor the decode threads wait for it, their fields are split when first read. The results are cached
+ * by their content, a code which stays in view or comes back is parsed once.
+ */
+public class PayloadProcessor {
+
+    private static final String THREAD_NAME = "PayloadParser";
+
+    private final ExecutorService executor;
+    private final int maxEntries;
+    private final LinkedHashMap<Key, ParsedPayload> cache;
+
+    private long hits;
+    private long misses;
+
+    /**
+     * @param maxEntries The maximum number of cached results, the least recently used ones are dropped
+     */
+    public PayloadProcessor(int maxEntries) {
+        this.maxEntries = maxEntries;
+        this.cache = new LinkedHashMap<Key, ParsedPayload>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, ParsedPayload> eldest) {
+                return size() > PayloadProcessor.this.maxEntries;
+            }
+        };
+        this.executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, THREAD_NAME);
+                thread.setPriority(Thread.NORM_PRIORITY - 1);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Queues the symbols for parsing, returns immediately
+     * @param symbols The symbols, not modified afterwards by the caller
+     * @param listener Notified on the parser thread with the results, a symbol which could not be
+     *                 parsed is reported to it and left out of them
+     * @return False if the processor is shut down
+     */
+    public boolean process(final List<DecodedSymbol> symbols, final IPayloadListener listener) {
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    List<DecodedSymbol> parsed = new ArrayList<>(symbols.size());
+                    List<ParsedPayload> payloads = new ArrayList<>(symbols.size());
+                    for (DecodedSymbol symbol : symbols) {
+                        try {
+                            payloads.add(parse(symbol));
+                            parsed.add(symbol);
+                        } catch (RuntimeException e) {
+                            // A failing symbol must not stop the parser thread
+                            listener.onError(symbol, e);
+                        }
+                    }
+                    if (!parsed.isEmpty()) {
+                        listener.onParsed(parsed, payloads);
+                    }
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Parses on the calling thread, or returns the cached result
+     */
+    public ParsedPayload parse(DecodedSymbol symbol) {
+        Key key = new Key(symbol);
+        synchronized (cache) {
+            ParsedPayload payload = cache.get(key);
+            if (payload != null) {
+                hits++;
+                return payload;
+            }
+            misses++;
+        }
+        ParsedPayload payload = PayloadParser.parse(symbol.getType(), symbol.getData(), symbol.getRawBytes());
+        synchronized (cache) {
+            cache.put(key, payload);
+        }
+        return payload;
+    }
+
+    /**
+     * @return The number of results taken from the cache
+     */
+    public long getHits() {
+        synchronized (cache) {
+            return hits;
+        }
+    }
+
+    /**
+     * @return The number of parsed payloads
+     */
+    public long getMisses() {
+        synchronized (cache) {
+            return misses;
+        }
+    }
+
+    /**
+     * Drops the queued symbols, the running parse is finished
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * The content of a code, the raw bytes tell apart binary payloads with the same text
+     */
+    private static final class Key {
+        final int type;
+        final String data;
+        final byte[] rawBytes;
+        final int hash;
+
+        Key(DecodedSymbol symbol) {
+            this.type = symbol.getType();
+            this.data = symbol.getData();
+            this.rawBytes = symbol.getRawBytes();
+            this.hash = 31 * (31 * type + data.hashCode()) + Arrays.hashCode(rawBytes);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return type == other.type && data.equals(other.data) && Arrays.equals(rawBytes, other.rawBytes);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
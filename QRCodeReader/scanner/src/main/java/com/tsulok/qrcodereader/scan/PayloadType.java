@@ -0,0 +1,37 @@
+package com.tsulok.qrcodereader.scan;
+
+/**
+ * What the data of a code is, decides the fields of its {@link ParsedPayload}
+ */
+public enum PayloadType {
+
+    /**
+     * Plain text, no fields
+     */
+    TEXT,
+
+    /**
+     * A web address, see {@link PayloadParser#URL}
+     */
+    URL,
+
+    /**
+     * A Wi-Fi network configuration, see the {@code WIFI_} fields of {@link PayloadParser}
+     */
+    WIFI,
+
+    /**
+     * A contact, see the {@code VCARD_} fields of {@link PayloadParser}
+     */
+    VCARD,
+
+    /**
+     * A GS1 element string, the fields are the application identifiers
+     */
+    GS1,
+
+    /**
+     * Bytes which are not text, no fields
+     */
+    BINARY
+}
@@ -0,0 +1,119 @@
+package com.tsulok.qrcodereader.scan;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Coarse to fine decoding.
+ * Frames are scanned first on a downsampled copy, which is enough for large, close codes.
+ * The full resolution is scanned only after several coarse misses. When that finds a code,
+ * the code is known to be too small for the coarse pass, so full resolution scanning is kept
+ * until the code is lost again.
+ * Not thread safe, owned by a single decode worker.
+ */
+public class PyramidDecoder {
+
+    /**
+     * Coarse frames are not made smaller than this on their shorter side
+     */
+    private static final int MIN_COARSE_SIZE = 160;
+
+    private final IBarcodeEngine engine;
+    private final LumaFrame coarseFrame = new LumaFrame(0);
+    private final List<DecodedSymbol> firstSymbol = new ArrayList<>(1);
+    private final int factor;
+    private final int fullResolutionAfterMisses;
+
+    private int coarseMisses;
+    private boolean fineMode;
+
+    /**
+     * @param engine The engine used for both levels
+     * @param factor The downsampling factor of the coarse pass, 1 disables it
+     * @param fullResolutionAfterMisses The number of coarse misses after which a frame is scanned at full resolution
+     */
+    public PyramidDecoder(IBarcodeEngine engine, int factor, int fullResolutionAfterMisses) {
+        this.engine = engine;
+        this.factor = factor;
+        this.fullResolutionAfterMisses = Math.max(1, fullResolutionAfterMisses);
+    }
+
+    /**
+     * Scans a frame for codes
+     * @param frame The full resolution frame
+     * @return The first found symbol, or null if nothing was found
+     */
+    public DecodedSymbol decode(LumaFrame frame) {
+        firstSymbol.clear();
+        DecodedSymbol symbol = decode(frame, firstSymbol, false) > 0 ? firstSymbol.get(0) : null;
+        firstSymbol.clear();
+        return symbol;
+    }
+
+    /**
+     * Scans a frame for every code in it.
+     * The level is chosen as by {@link #decode}, the codes too small for the coarse pass
+     * are only found once no code is found there.
+     * @param frame The full resolution frame
+     * @param found The found symbols are added to it
+     * @return The number of found symbols
+     */
+    public int decodeAll(LumaFrame frame, List<DecodedSymbol> found) {
+        return decode(frame, found, true);
+    }
+
+    private int decode(LumaFrame frame, List<DecodedSymbol> found, boolean all) {
+        int coarseFactor = coarseFactor(frame);
+        if (coarseFactor <= 1) {
+            return scan(frame, 1, found, all);
+        }
+
+        if (!fineMode) {
+            LumaDownsampler.downsample(frame, coarseFrame, coarseFactor);
+            int count = scan(coarseFrame, coarseFactor, found, all);
+            if (count > 0) {
+                coarseMisses = 0;
+                return count;
+            }
+            if (++coarseMisses < fullResolutionAfterMisses) {
+                return 0;
+            }
+        }
+
+        coarseMisses = 0;
+        int count = scan(frame, 1, found, all);
+        fineMode = count > 0;
+        return count;
+    }
+
+    private int scan(LumaFrame frame, int scale, List<DecodedSymbol> found, boolean all) {
+        if (all) {
+            return engine.decodeAll(frame, scale, found);
+        }
+        DecodedSymbol symbol = engine.decode(frame, scale);
+        if (symbol == null) {
+            return 0;
+        }
+        found.add(symbol);
+        return 1;
+    }
+
+    /**
+     * Releases the resources of the engine
+     */
+    public void destroy() {
+        engine.destroy();
+    }
+
+    /**
+     * The largest allowed factor which keeps the coarse frame above {@link #MIN_COARSE_SIZE}
+     */
+    private int coarseFactor(LumaFrame frame) {
+        int shorterSide = Math.min(frame.getWidth(), frame.getHeight());
+        int coarseFactor = factor;
+        while (coarseFactor > 1 && shorterSide / coarseFactor < MIN_COARSE_SIZE) {
+            coarseFactor /= 2;
+        }
+        return coarseFactor;
+    }
+}
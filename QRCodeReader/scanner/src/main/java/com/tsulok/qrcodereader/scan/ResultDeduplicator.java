@@ -0,0 +1,106 @@
+package com.tsulok.qrcodereader.scan;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Suppresses payloads which have been delivered recently.
+ * A payload counts as seen while it keeps being decoded within the time-to-live, so a code
+ * staying in view is delivered once, and again only after it was out of view for longer
+ * than the time-to-live. The least recently seen payloads are evicted above the size limit.
+ * Thread safe.
+ */
+public class ResultDeduplicator {
+
+    private final int maxEntries;
+    private final LinkedHashMap<String, Sighting> sightings;
+    private volatile long ttlNanos;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * @param ttlMillis The time after which a payload which has not been seen is delivered again
+     * @param maxEntries The maximum number of remembered payloads
+     */
+    public ResultDeduplicator(long ttlMillis, int maxEntries) {
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttlMillis * 1000000L;
+        this.sightings = new LinkedHashMap<String, Sighting>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Sighting> eldest) {
+                if (size() > ResultDeduplicator.this.maxEntries) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Records a sighting of the payload
+     * @param payload The decoded data
+     * @return True if the payload is new or re-appeared and should be delivered
+     */
+    public synchronized boolean isNew(String payload) {
+        long now = System.nanoTime();
+        Sighting sighting = sightings.get(payload);
+        if (sighting != null) {
+            boolean expired = now - sighting.lastSeen > ttlNanos;
+            sighting.lastSeen = now;
+            if (expired) {
+                misses++;
+                return true;
+            }
+            hits++;
+            return false;
+        }
+
+        misses++;
+        sightings.put(payload, new Sighting(now));
+        return true;
+    }
+
+    /**
+     * Forgets every payload, the next sighting of any code is delivered
+     */
+    public synchronized void clear() {
+        sightings.clear();
+    }
+
+    public void setTtl(long ttlMillis) {
+        this.ttlNanos = ttlMillis * 1000000L;
+    }
+
+    /**
+     * @return The number of suppressed duplicates
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return The number of delivered payloads
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized int size() {
+        return sightings.size();
+    }
+
+    private static final class Sighting {
+        long lastSeen;
+
+        Sighting(long lastSeen) {
+            this.lastSeen = lastSeen;
+        }
+    }
+}
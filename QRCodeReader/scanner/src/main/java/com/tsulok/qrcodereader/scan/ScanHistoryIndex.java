@@ -0,0 +1,276 @@
+package com.tsulok.qrcodereader.scan;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * The index of the {@link ScanHistoryLog}: the time, the log offset and the first bytes of the
+ * payload of every record, in log order.
+ * It is checkpointed into its own file after the log is synced, so opening the log only has to
+ * read the records appended after the last checkpoint.
+ * Not thread safe, guarded by the log.
+ */
+class ScanHistoryIndex {
+
+    /**
+     * Payload bytes kept per record for the prefix lookup
+     */
+    static final int KEY_SIZE = 15;
+
+    private static final int MAGIC = 0x51524958;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    private static final int ENTRY_SIZE = 32;
+
+    private long[] times = new long[1024];
+    private long[] offsets = new long[1024];
+    private byte[] keys = new byte[1024 * KEY_SIZE];
+    private byte[] keyLengths = new byte[1024];
+    private int size;
+
+    /**
+     * Whether the times are ascending, the clock may be set back
+     */
+    private boolean timeOrdered = true;
+
+    /**
+     * The entries sorted by key, valid while its length is the size
+     */
+    private Integer[] keyOrder = new Integer[0];
+
+    private int checkpointedEntries;
+    private long checkpointEnd;
+
+    /**
+     * @param logStart The offset of the first record, the log end of an empty index
+     */
+    ScanHistoryIndex(long logStart) {
+        this.checkpointEnd = logStart;
+    }
+
+    void add(long time, long offset, byte[] payload) {
+        if (size == times.length) {
+            int capacity = size * 2;
+            times = Arrays.copyOf(times, capacity);
+            offsets = Arrays.copyOf(offsets, capacity);
+            keys = Arrays.copyOf(keys, capacity * KEY_SIZE);
+            keyLengths = Arrays.copyOf(keyLengths, capacity);
+        }
+        if (size > 0 && time < times[size - 1]) {
+            timeOrdered = false;
+        }
+        times[size] = time;
+        offsets[size] = offset;
+        int keyLength = Math.min(KEY_SIZE, payload.length);
+        System.arraycopy(payload, 0, keys, size * KEY_SIZE, keyLength);
+        keyLengths[size] = (byte) keyLength;
+        size++;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return The log end the last checkpoint covered
+     */
+    long getCheckpointEnd() {
+        return checkpointEnd;
+    }
+
+    /**
+     * @return The offsets of the records between the times inclusive, in log order
+     */
+    List<Long> findByTime(long from, long to) {
+        List<Long> found = new ArrayList<>();
+        int start = 0;
+        if (timeOrdered) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (times[middle] < from) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            start = low;
+        }
+        for (int i = start; i < size; i++) {
+            if (times[i] > to && timeOrdered) {
+                break;
+            }
+            if (times[i] >= from && times[i] <= to) {
+                found.add(offsets[i]);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Only the first {@link #KEY_SIZE} bytes of the prefix are compared,
+     * the records of longer prefixes have to be checked by the caller
+     * @return The offsets of the records whose key starts with the prefix, in log order
+     */
+    List<Long> findByKeyPrefix(byte[] prefix) {
+        if (keyOrder.length != size) {
+            sortKeys();
+        }
+        int prefixLength = Math.min(KEY_SIZE, prefix.length);
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (compareKey(keyOrder[middle], prefix, prefixLength) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        List<Long> found = new ArrayList<>();
+        for (int i = low; i < size && startsWith(keyOrder[i], prefix, prefixLength); i++) {
+            found.add(offsets[keyOrder[i]]);
+        }
+        Collections.sort(found);
+        return found;
+    }
+
+    /**
+     * Appends the entries added since the last checkpoint, then the header which commits them
+     * @param logEnd The end of the synced log the entries cover
+     */
+    void checkpoint(FileChannel channel, long logEnd) throws IOException {
+        if (size > checkpointedEntries) {
+            ByteBuffer entries = ByteBuffer.allocate((size - checkpointedEntries) * ENTRY_SIZE);
+            for (int i = checkpointedEntries; i < size; i++) {
+                entries.putLong(times[i]);
+                entries.putLong(offsets[i]);
+                entries.put(keyLengths[i]);
+                entries.put(keys, i * KEY_SIZE, KEY_SIZE);
+            }
+            entries.flip();
+            writeFully(channel, entries, HEADER_SIZE + (long) checkpointedEntries * ENTRY_SIZE);
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).putLong(size).putLong(logEnd);
+        header.putInt(headerCrc(size, logEnd));
+        header.rewind();
+        writeFully(channel, header, 0);
+        channel.force(false);
+        checkpointedEntries = size;
+        checkpointEnd = logEnd;
+    }
+
+    /**
+     * Reads a checkpoint
+     * @param logStart The offset of the first record of the log
+     * @return The index, an empty one if the file is missing or damaged
+     */
+    static ScanHistoryIndex load(FileChannel channel, long logStart) throws IOException {
+        ScanHistoryIndex index = new ScanHistoryIndex(logStart);
+        if (channel.size() < HEADER_SIZE) {
+            return index;
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        readFully(channel, header, 0);
+        header.flip();
+        int magic = header.getInt();
+        int version = header.getInt();
+        long count = header.getLong();
+        long logEnd = header.getLong();
+        int crc = header.getInt();
+        if (magic != MAGIC || version != VERSION || crc != headerCrc(count, logEnd) || count < 0
+                || HEADER_SIZE + count * ENTRY_SIZE > channel.size() || count > Integer.MAX_VALUE / ENTRY_SIZE) {
+            return index;
+        }
+        ByteBuffer entries = ByteBuffer.allocate((int) count * ENTRY_SIZE);
+        readFully(channel, entries, HEADER_SIZE);
+        entries.flip();
+        byte[] key = new byte[KEY_SIZE];
+        for (int i = 0; i < count; i++) {
+            long time = entries.getLong();
+            long offset = entries.getLong();
+            int keyLength = Math.min(KEY_SIZE, entries.get() & 0xff);
+            entries.get(key);
+            index.add(time, offset, Arrays.copyOf(key, keyLength));
+        }
+        index.checkpointedEntries = index.size;
+        index.checkpointEnd = logEnd;
+        return index;
+    }
+
+    private void sortKeys() {
+        keyOrder = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            keyOrder[i] = i;
+        }
+        Arrays.sort(keyOrder, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer lhs, Integer rhs) {
+                return compareKey(lhs, keys, rhs * KEY_SIZE, keyLengths[rhs]);
+            }
+        });
+    }
+
+    private int compareKey(int entry, byte[] other, int length) {
+        return compareKey(entry, other, 0, length);
+    }
+
+    /**
+     * Compares the key of the entry with other bytes, unsigned and shorter first
+     */
+    private int compareKey(int entry, byte[] other, int otherStart, int otherLength) {
+        int start = entry * KEY_SIZE;
+        int length = keyLengths[entry];
+        for (int i = 0; i < Math.min(length, otherLength); i++) {
+            int difference = (keys[start + i] & 0xff) - (other[otherStart + i] & 0xff);
+            if (difference != 0) {
+                return difference;
+            }
+        }
+        return length - otherLength;
+    }
+
+    private boolean startsWith(int entry, byte[] prefix, int prefixLength) {
+        if (keyLengths[entry] < prefixLength) {
+            return false;
+        }
+        int start = entry * KEY_SIZE;
+        for (int i = 0; i < prefixLength; i++) {
+            if (keys[start + i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int headerCrc(long count, long logEnd) {
+        CRC32 crc = new CRC32();
+        crc.update(ByteBuffer.allocate(16).putLong(count).putLong(logEnd).array());
+        return (int) crc.getValue();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("Unexpected end of the index");
+            }
+            position += read;
+        }
+    }
+}
@@ -0,0 +1,402 @@
+package com.tsulok.qrcodereader.scan;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * A persistent, append only history of the found codes.
+ *
+ * The records are appended to a memory mapped file in chunks of {@link #CHUNK_SIZE}, a record never
+ * spans two chunks. The mapped pages belong to the kernel, so the written records survive the death
+ * of the process, {@link MappedByteBuffer#force} is called in batches for power loss.
+ * Every record carries a CRC32, a torn record ends the log when it is opened again.
+ *
+ * After each sync the {@link ScanHistoryIndex} is checkpointed, opening the log only reads and checks
+ * the records appended after the last checkpoint. The index answers the lookups by time range and
+ * by payload prefix without reading the log.
+ *
+ * {@link #append} only queues the record, the writing is done by an own thread.
+ * The lookups can be called from any thread.
+ */
+public class ScanHistoryLog implements Closeable {
+
+    private static final String LOG_FILE = "scans.log";
+    private static final String INDEX_FILE = "scans.idx";
+
+    static final int CHUNK_SIZE = 1 << 20;
+
+    private static final int MAGIC = 0x51524c47;
+    private static final int VERSION = 1;
+    private static final int FILE_HEADER_SIZE = 8;
+
+    /**
+     * Length and CRC of the body
+     */
+    private static final int RECORD_HEADER_SIZE = 8;
+
+    /**
+     * Time, symbology and bounds, followed by the payload
+     */
+    private static final int BODY_HEADER_SIZE = 8 + 4 + 4 * 4;
+
+    /**
+     * Written as the length where the rest of a chunk is unused, a length of 0 ends the log
+     */
+    private static final int SKIP_TO_NEXT_CHUNK = -1;
+
+    /**
+     * Longer payloads are cut, the largest QR codes hold less than 3 KB
+     */
+    public static final int MAX_PAYLOAD_SIZE = 16 * 1024;
+
+    /**
+     * The records are synced after this many appends...
+     */
+    private static final int SYNC_BATCH_SIZE = 64;
+
+    /**
+     * ...or this long after the first unsynced append
+     */
+    private static final long SYNC_INTERVAL_MS = 1000;
+
+    private static final int QUEUE_CAPACITY = 1024;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * Queued by {@link #close} after the pending records
+     */
+    private static final ScanRecord STOP = new ScanRecord(0, 0, "", 0, 0, 0, 0);
+
+    private final RandomAccessFile logFile;
+    private final RandomAccessFile indexFile;
+    private final List<MappedByteBuffer> chunks = new ArrayList<>();
+    private final ScanHistoryIndex index;
+
+    /**
+     * Guards the chunks, the index and the end
+     */
+    private final Object lock = new Object();
+    private long end;
+    private int firstDirtyChunk = -1;
+
+    private final BlockingQueue<ScanRecord> pendingRecords = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final Thread writerThread;
+    private volatile boolean closed;
+
+    /**
+     * Only used on the writer thread
+     */
+    private final ByteBuffer body = ByteBuffer.allocate(BODY_HEADER_SIZE + MAX_PAYLOAD_SIZE);
+    private final CRC32 crc = new CRC32();
+
+    private ScanHistoryLog(File directory) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        logFile = new RandomAccessFile(new File(directory, LOG_FILE), "rw");
+        indexFile = new RandomAccessFile(new File(directory, INDEX_FILE), "rw");
+        try {
+            // Mapping grows the file to whole chunks, a truncated log is only seen before
+            long length = logFile.length();
+            boolean created = length == 0;
+            MappedByteBuffer first = chunk(0);
+            if (created) {
+                first.putInt(0, MAGIC);
+                first.putInt(4, VERSION);
+            } else if (first.getInt(0) != MAGIC || first.getInt(4) != VERSION) {
+                throw new IOException("Not a scan history log");
+            }
+            ScanHistoryIndex checkpoint = ScanHistoryIndex.load(indexFile.getChannel(), FILE_HEADER_SIZE);
+            if (checkpoint.getCheckpointEnd() > length) {
+                checkpoint = new ScanHistoryIndex(FILE_HEADER_SIZE);
+            }
+            index = checkpoint;
+            end = recover(index.getCheckpointEnd());
+        } catch (IOException e) {
+            logFile.close();
+            indexFile.close();
+            throw e;
+        }
+        writerThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                writeLoop();
+            }
+        }, "ScanHistoryWriter");
+        writerThread.setPriority(Thread.NORM_PRIORITY - 1);
+        writerThread.start();
+    }
+
+    /**
+     * Opens or creates the log in the directory
+     */
+    public static ScanHistoryLog open(File directory) throws IOException {
+        return new ScanHistoryLog(directory);
+    }
+
+    /**
+     * Queues a record for writing, never blocks
+     * @return False if the log is closed or the writer is too far behind, the record is dropped then
+     */
+    public boolean append(ScanRecord record) {
+        return !closed && pendingRecords.offer(record);
+    }
+
+    /**
+     * @return The number of written records, the queued ones are not counted
+     */
+    public int size() {
+        synchronized (lock) {
+            return index.size();
+        }
+    }
+
+    /**
+     * @param from The first time in milliseconds, inclusive
+     * @param to The last time in milliseconds, inclusive
+     * @param limit The maximal number of records returned
+     * @return The written records scanned in the time range, in log order
+     */
+    public List<ScanRecord> findByTime(long from, long to, int limit) throws IOException {
+        synchronized (lock) {
+            List<ScanRecord> records = new ArrayList<>();
+            for (long offset : index.findByTime(from, to)) {
+                if (records.size() >= limit) {
+                    break;
+                }
+                records.add(read(offset));
+            }
+            return records;
+        }
+    }
+
+    /**
+     * @param prefix The start of the payloads
+     * @param limit The maximal number of records returned
+     * @return The written records whose payload starts with the prefix, in log order
+     */
+    public List<ScanRecord> findByPayloadPrefix(String prefix, int limit) throws IOException {
+        synchronized (lock) {
+            List<ScanRecord> records = new ArrayList<>();
+            for (long offset : index.findByKeyPrefix(prefix.getBytes(UTF_8))) {
+                if (records.size() >= limit) {
+                    break;
+                }
+                ScanRecord record = read(offset);
+                // The index only knows the first bytes
+                if (record.getPayload().startsWith(prefix)) {
+                    records.add(record);
+                }
+            }
+            return records;
+        }
+    }
+
+    /**
+     * Writes and syncs the queued records, then closes the files
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            pendingRecords.put(STOP);
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            synchronized (lock) {
+                logFile.close();
+                indexFile.close();
+            }
+        }
+    }
+
+    private void writeLoop() {
+        int unsynced = 0;
+        long firstUnsyncedTime = 0;
+        while (true) {
+            ScanRecord record;
+            try {
+                record = unsynced == 0 ? pendingRecords.take()
+                        : pendingRecords.poll(Math.max(0, firstUnsyncedTime + SYNC_INTERVAL_MS
+                        - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                record = STOP;
+            }
+            if (record != null && record != STOP) {
+                try {
+                    synchronized (lock) {
+                        write(record);
+                    }
+                    if (unsynced++ == 0) {
+                        firstUnsyncedTime = System.currentTimeMillis();
+                    }
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+            boolean intervalOver = System.currentTimeMillis() - firstUnsyncedTime >= SYNC_INTERVAL_MS;
+            if (unsynced > 0 && (record == STOP || unsynced >= SYNC_BATCH_SIZE || intervalOver)) {
+                try {
+                    sync();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+                unsynced = 0;
+            }
+            if (record == STOP) {
+                return;
+            }
+        }
+    }
+
+    private void write(ScanRecord record) throws IOException {
+        byte[] payload = record.getPayload().getBytes(UTF_8);
+        int payloadSize = Math.min(payload.length, MAX_PAYLOAD_SIZE);
+        body.clear();
+        body.putLong(record.getTimestamp()).putInt(record.getSymbology())
+                .putInt(record.getLeft()).putInt(record.getTop())
+                .putInt(record.getWidth()).putInt(record.getHeight())
+                .put(payload, 0, payloadSize);
+        body.flip();
+        crc.reset();
+        crc.update(body.array(), 0, body.limit());
+
+        int recordSize = RECORD_HEADER_SIZE + body.limit();
+        int position = (int) (end % CHUNK_SIZE);
+        if (position + recordSize > CHUNK_SIZE) {
+            if (CHUNK_SIZE - position >= 4) {
+                chunk(chunkOf(end)).putInt(position, SKIP_TO_NEXT_CHUNK);
+                markDirty(chunkOf(end));
+            }
+            end = (chunkOf(end) + 1) * (long) CHUNK_SIZE;
+            position = 0;
+        }
+        MappedByteBuffer chunk = chunk(chunkOf(end));
+        ByteBuffer target = chunk.duplicate();
+        target.position(position + RECORD_HEADER_SIZE);
+        target.put(body);
+        chunk.putInt(position + 4, (int) crc.getValue());
+        chunk.putInt(position, body.limit());
+        // Stale bytes of a lost tail must not look like the next record
+        if (position + recordSize + 4 <= CHUNK_SIZE) {
+            chunk.putInt(position + recordSize, 0);
+        }
+        markDirty(chunkOf(end));
+
+        index.add(record.getTimestamp(), end, payload);
+        end += recordSize;
+    }
+
+    /**
+     * Forces the written chunks to disk, then checkpoints the index.
+     * Only the lookups share the lock, and they do not wait for the disk: the chunks are forced outside
+     * of it. Records are only written on this thread, so nothing changes until the checkpoint.
+     */
+    private void sync() throws IOException {
+        List<MappedByteBuffer> dirtyChunks;
+        long syncedEnd;
+        synchronized (lock) {
+            dirtyChunks = firstDirtyChunk >= 0
+                    ? new ArrayList<>(chunks.subList(firstDirtyChunk, chunks.size()))
+                    : new ArrayList<MappedByteBuffer>();
+            firstDirtyChunk = -1;
+            syncedEnd = end;
+        }
+        for (MappedByteBuffer chunk : dirtyChunks) {
+            chunk.force();
+        }
+        synchronized (lock) {
+            index.checkpoint(indexFile.getChannel(), syncedEnd);
+        }
+    }
+
+    /**
+     * Reads the records after the last checkpoint into the index
+     * @return The end of the last valid record
+     */
+    private long recover(long offset) throws IOException {
+        long fileSize = logFile.length();
+        while (offset < fileSize) {
+            int position = (int) (offset % CHUNK_SIZE);
+            MappedByteBuffer chunk = chunk(chunkOf(offset));
+            int length = CHUNK_SIZE - position >= 4 ? chunk.getInt(position) : SKIP_TO_NEXT_CHUNK;
+            if (length == SKIP_TO_NEXT_CHUNK) {
+                offset = (chunkOf(offset) + 1) * (long) CHUNK_SIZE;
+                continue;
+            }
+            if (length < BODY_HEADER_SIZE || position + RECORD_HEADER_SIZE + length > CHUNK_SIZE) {
+                break;
+            }
+            byte[] bytes = new byte[length];
+            ByteBuffer source = chunk.duplicate();
+            source.position(position + RECORD_HEADER_SIZE);
+            source.get(bytes);
+            crc.reset();
+            crc.update(bytes, 0, length);
+            if ((int) crc.getValue() != chunk.getInt(position + 4)) {
+                break;
+            }
+            ByteBuffer recordBody = ByteBuffer.wrap(bytes);
+            long time = recordBody.getLong();
+            index.add(time, offset, Arrays.copyOfRange(bytes, BODY_HEADER_SIZE, length));
+            offset += RECORD_HEADER_SIZE + length;
+        }
+        return offset;
+    }
+
+    private ScanRecord read(long offset) throws IOException {
+        int position = (int) (offset % CHUNK_SIZE);
+        MappedByteBuffer chunk = chunk(chunkOf(offset));
+        int length = chunk.getInt(position);
+        ByteBuffer source = chunk.duplicate();
+        source.position(position + RECORD_HEADER_SIZE);
+        long time = source.getLong();
+        int symbology = source.getInt();
+        int left = source.getInt();
+        int top = source.getInt();
+        int width = source.getInt();
+        int height = source.getInt();
+        byte[] payload = new byte[length - BODY_HEADER_SIZE];
+        source.get(payload);
+        return new ScanRecord(time, symbology, new String(payload, UTF_8), left, top, width, height);
+    }
+
+    /**
+     * Maps the chunk if it is not mapped yet, which also grows the file
+     */
+    private MappedByteBuffer chunk(int chunkIndex) throws IOException {
+        while (chunks.size() <= chunkIndex) {
+            chunks.add(logFile.getChannel().map(FileChannel.MapMode.READ_WRITE,
+                    (long) chunks.size() * CHUNK_SIZE, CHUNK_SIZE));
+        }
+        return chunks.get(chunkIndex);
+    }
+
+    private void markDirty(int chunkIndex) {
+        if (firstDirtyChunk < 0 || chunkIndex < firstDirtyChunk) {
+            firstDirtyChunk = chunkIndex;
+        }
+    }
+
+    private static int chunkOf(long offset) {
+        return (int) (offset / CHUNK_SIZE);
+    }
+}
@@ -0,0 +1,160 @@
+package com.tsulok.qrcodereader.scan;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Latencies and counters of the preview scan pipeline.
+ * Recorded from the camera thread and the decode workers, readable from any thread.
+ */
+public class ScanMetrics {
+
+    /**
+     * The measured steps of a frame, in pipeline order
+     */
+    public enum Stage {
+        /**
+         * The time between two frames arriving from the camera
+         */
+        ARRIVAL,
+        /**
+         * Acquiring the camera image and a free frame buffer
+         */
+        ACQUIRE,
+        /**
+         * The sharpness and scene change checks of the frames which pass them
+         */
+        GATE,
+        /**
+         * Copying the luma plane into the frame buffer
+         */
+        COPY,
+        /**
+         * Waiting for a decode worker
+         */
+        QUEUE,
+        /**
+         * Decoding the frame
+         */
+        DECODE,
+        /**
+         * Delivering a found code to the listener
+         */
+        DISPATCH
+    }
+
+    private final Map<Stage, LatencyHistogram> histograms = new EnumMap<>(Stage.class);
+
+    private final AtomicLong receivedFrames = new AtomicLong();
+    private final AtomicLong droppedFrames = new AtomicLong();
+    private final AtomicLong skippedFrames = new AtomicLong();
+    private final AtomicLong decodedFrames = new AtomicLong();
+
+    private volatile long startNanos = System.nanoTime();
+    private final AtomicLong firstDecodeNanos = new AtomicLong(-1);
+
+    public ScanMetrics() {
+        for (Stage stage : Stage.values()) {
+            histograms.put(stage, new LatencyHistogram());
+        }
+    }
+
+    public void record(Stage stage, long nanos) {
+        histograms.get(stage).record(nanos);
+    }
+
+    public LatencyHistogram getHistogram(Stage stage) {
+        return histograms.get(stage);
+    }
+
+    /**
+     * A frame arrived from the camera
+     */
+    public void onFrameReceived() {
+        receivedFrames.incrementAndGet();
+    }
+
+    /**
+     * A frame was lost because no buffer was free or a newer frame replaced it before decoding
+     */
+    public void onFrameDropped() {
+        droppedFrames.incrementAndGet();
+    }
+
+    /**
+     * A frame was not decoded on purpose: blurry, unchanged scene
+     */
+    public void onFrameSkipped() {
+        skippedFrames.incrementAndGet();
+    }
+
+    /**
+     * A code was found in a frame
+     */
+    public void onFrameDecoded() {
+        decodedFrames.incrementAndGet();
+        firstDecodeNanos.compareAndSet(-1, System.nanoTime() - startNanos);
+    }
+
+    public long getReceivedFrames() {
+        return receivedFrames.get();
+    }
+
+    public long getDroppedFrames() {
+        return droppedFrames.get();
+    }
+
+    public long getSkippedFrames() {
+        return skippedFrames.get();
+    }
+
+    public long getDecodedFrames() {
+        return decodedFrames.get();
+    }
+
+    /**
+     * @return The time from the last {@link #reset} to the first found code in nanoseconds,
+     * or -1 if nothing has been found since
+     */
+    public long getTimeToFirstDecodeNanos() {
+        return firstDecodeNanos.get();
+    }
+
+    /**
+     * Clears everything and restarts the time to first decode, called when scanning starts
+     */
+    public void reset() {
+        for (LatencyHistogram histogram : histograms.values()) {
+            histogram.reset();
+        }
+        receivedFrames.set(0);
+        droppedFrames.set(0);
+        skippedFrames.set(0);
+        decodedFrames.set(0);
+        firstDecodeNanos.set(-1);
+        startNanos = System.nanoTime();
+    }
+
+    /**
+     * A short multi line summary: counters, time to first decode, then p50/p95/max per stage in ms
+     */
+    public String format() {
+        StringBuilder builder = new StringBuilder();
+        long firstDecode = getTimeToFirstDecodeNanos();
+        builder.append(String.format(Locale.US, "frames %d, dropped %d, skipped %d, decoded %d%n",
+                getReceivedFrames(), getDroppedFrames(), getSkippedFrames(), getDecodedFrames()));
+        builder.append(firstDecode < 0 ? "first decode: -"
+                : String.format(Locale.US, "first decode: %.0f ms", firstDecode / 1e6));
+        for (Stage stage : Stage.values()) {
+            LatencyHistogram histogram = histograms.get(stage);
+            builder.append(String.format(Locale.US, "%n%-8s p50 %6.2f  p95 %6.2f  max %6.2f",
+                    stage.name().toLowerCase(Locale.US),
+                    histogram.getPercentileNanos(0.50) / 1e6,
+                    histogram.getPercentileNanos(0.95) / 1e6,
+                    histogram.getMaxNanos() / 1e6));
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,113 @@
+package com.tsulok.qrcodereader.scan;
+
+import net.sourceforge.zbar.Symbol;
+
+/**
+ * What a scan looks for and how much it may cost.
+ * Every enabled symbology is an extra pass over the scanned lines and the density sets
+ * how many lines are scanned, so a profile should enable only what its use case needs.
+ */
+public enum ScanProfile {
+
+    /**
+     * QR codes in the viewfinder box, up to version 4 (33 modules) filling a quarter of the frame
+     */
+    QR_ONLY(new int[]{Symbol.QRCODE}, 3, 3, 40, 0.6f, 33, 0.25f),
+
+    /**
+     * EAN and UPC product codes. The bars are tall, so sparse scan lines still cross them,
+     * the box is wider for the long codes. An EAN-13 is 95 modules wide, held to fill half the frame.
+     */
+    RETAIL_1D(new int[]{Symbol.EAN13, Symbol.EAN8, Symbol.UPCA, Symbol.UPCE}, 4, 4, 80, 0.8f, 95, 0.5f),
+
+    /**
+     * Every supported symbology on the whole frame, sized for QR codes up to version 10 (57 modules)
+     */
+    EVERYTHING(null, 2, 2, 0, 1f, 57, 0.3f);
+
+    private final int[] symbologies;
+    private final int xDensity;
+    private final int yDensity;
+    private final int minCodeSize;
+    private final float regionFraction;
+    private final int expectedModules;
+    private final float expectedCodeFraction;
+
+    /**
+     * @param symbologies The enabled zbar {@code Symbol} constants, null enables all of them
+     * @param xDensity Every n-th column is scanned
+     * @param yDensity Every n-th row is scanned
+     * @param minCodeSize Codes smaller than this on both sides, in frame pixels, are dropped
+     * @param regionFraction The size of the scanned viewfinder box relative to the view
+     * @param expectedModules The modules across the largest expected code
+     * @param expectedCodeFraction The part of the shorter frame side the expected code covers
+     */
+    ScanProfile(int[] symbologies, int xDensity, int yDensity, int minCodeSize, float regionFraction,
+                int expectedModules, float expectedCodeFraction) {
+        this.symbologies = symbologies;
+        this.xDensity = xDensity;
+        this.yDensity = yDensity;
+        this.minCodeSize = minCodeSize;
+        this.regionFraction = regionFraction;
+        this.expectedModules = expectedModules;
+        this.expectedCodeFraction = expectedCodeFraction;
+    }
+
+    /**
+     * @return The enabled zbar {@code Symbol} constants, or null if all of them are enabled
+     */
+    public int[] getSymbologies() {
+        return symbologies != null ? symbologies.clone() : null;
+    }
+
+    public boolean isEverySymbologyEnabled() {
+        return symbologies == null;
+    }
+
+    public int getXDensity() {
+        return xDensity;
+    }
+
+    public int getYDensity() {
+        return yDensity;
+    }
+
+    public int getMinCodeSize() {
+        return minCodeSize;
+    }
+
+    public float getRegionFraction() {
+        return regionFraction;
+    }
+
+    public int getExpectedModules() {
+        return expectedModules;
+    }
+
+    public float getExpectedCodeFraction() {
+        return expectedCodeFraction;
+    }
+
+    /**
+     * Whether a found code is large enough for this profile,
+     * tiny hits of sparse scans are usually misreads
+     */
+    public boolean accepts(DecodedSymbol symbol) {
+        return symbol.getWidth() >= minCodeSize || symbol.getHeight() >= minCodeSize;
+    }
+
+    /**
+     * Parses a stored profile name
+     * @return The profile, or the fallback if the name is unknown
+     */
+    public static ScanProfile fromName(String name, ScanProfile fallback) {
+        if (name != null) {
+            for (ScanProfile profile : values()) {
+                if (profile.name().equals(name)) {
+                    return profile;
+                }
+            }
+        }
+        return fallback;
+    }
+}
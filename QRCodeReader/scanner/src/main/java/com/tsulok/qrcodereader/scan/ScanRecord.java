@@ -0,0 +1,63 @@
+package com.tsulok.qrcodereader.scan;
+
+/**
+ * One entry of the {@link ScanHistoryLog}: what was found, when and where in the frame
+ */
+public class ScanRecord {
+
+    private final long timestamp;
+    private final int symbology;
+    private final String payload;
+    private final int left;
+    private final int top;
+    private final int width;
+    private final int height;
+
+    /**
+     * @param timestamp The wall clock time of the scan in milliseconds
+     * @param symbology The zbar {@code Symbol} type of the code
+     * @param payload The data of the code
+     */
+    public ScanRecord(long timestamp, int symbology, String payload, int left, int top, int width, int height) {
+        this.timestamp = timestamp;
+        this.symbology = symbology;
+        this.payload = payload;
+        this.left = left;
+        this.top = top;
+        this.width = width;
+        this.height = height;
+    }
+
+    public static ScanRecord fromSymbol(long timestamp, DecodedSymbol symbol) {
+        return new ScanRecord(timestamp, symbol.getType(), symbol.getData(),
+                symbol.getLeft(), symbol.getTop(), symbol.getWidth(), symbol.getHeight());
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public int getSymbology() {
+        return symbology;
+    }
+
+    public String getPayload() {
+        return payload;
+    }
+
+    public int getLeft() {
+        return left;
+    }
+
+    public int getTop() {
+        return top;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+}
@@ -0,0 +1,88 @@
+package com.tsulok.qrcodereader.scan;
+
+/**
+ * The part of the camera frame which is fed to the decoder.
+ * Only the region is copied for most frames, the full frame is scanned periodically
+ * as a fallback for codes held outside the viewfinder.
+ */
+public class ScanRegion {
+
+    /**
+     * Normalized {left, top, right, bottom} of the region in frame coordinates.
+     * Replaced as a whole, so the camera thread never sees a half updated region.
+     */
+    private volatile float[] bounds = {0f, 0f, 1f, 1f};
+    private final int fullFrameInterval;
+    private int frameCounter;
+
+    /**
+     * @param fullFrameInterval Every n-th frame is scanned completely, 0 disables the fallback
+     */
+    public ScanRegion(int fullFrameInterval) {
+        this.fullFrameInterval = fullFrameInterval;
+    }
+
+    /**
+     * Sets the region in frame coordinates
+     * @param left The left edge, 0-1
+     * @param top The top edge, 0-1
+     * @param right The right edge, 0-1
+     * @param bottom The bottom edge, 0-1
+     */
+    public void set(float left, float top, float right, float bottom) {
+        bounds = new float[]{clamp(Math.min(left, right)), clamp(Math.min(top, bottom)),
+                clamp(Math.max(left, right)), clamp(Math.max(top, bottom))};
+    }
+
+    /**
+     * Sets the region from normalized display coordinates
+     * @param rotation The clockwise rotation of the frame on the display in degrees (0, 90, 180, 270)
+     */
+    public void setFromDisplay(float left, float top, float right, float bottom, int rotation) {
+        switch ((rotation % 360 + 360) % 360) {
+            case 90:
+                set(top, 1f - right, bottom, 1f - left);
+                break;
+            case 180:
+                set(1f - right, 1f - bottom, 1f - left, 1f - top);
+                break;
+            case 270:
+                set(1f - bottom, left, 1f - top, right);
+                break;
+            default:
+                set(left, top, right, bottom);
+                break;
+        }
+    }
+
+    /**
+     * Copies the part of the plane which has to be scanned in this frame.
+     * Called for every frame on the camera thread.
+     * @param plane The full camera frame
+     * @param frame The destination, its origin tells where the copied region starts
+     */
+    public void copy(LumaPlane plane, LumaFrame frame) {
+        if (fullFrameInterval > 0 && ++frameCounter >= fullFrameInterval) {
+            frameCounter = 0;
+            plane.copyTo(frame);
+            return;
+        }
+
+        float[] region = bounds;
+        int width = plane.getWidth();
+        int height = plane.getHeight();
+        int left = (int) (region[0] * width);
+        int top = (int) (region[1] * height);
+        int right = (int) (region[2] * width);
+        int bottom = (int) (region[3] * height);
+        if (right - left < 1 || bottom - top < 1) {
+            plane.copyTo(frame);
+            return;
+        }
+        plane.copyRegionTo(frame, left, top, right - left, bottom - top);
+    }
+
+    private static float clamp(float value) {
+        return Math.max(0f, Math.min(1f, value));
+    }
+}
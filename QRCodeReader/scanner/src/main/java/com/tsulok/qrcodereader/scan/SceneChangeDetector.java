@@ -0,0 +1,121 @@
+package com.tsulok.qrcodereader.scan;
+
+/**
+ * Recognises an unchanged scene, so the same image is not decoded over and over.
+ * Every frame is reduced to a small signature of block averages read directly from the plane.
+ * The signature is compared with the one of the last decoded scene; slow drift adds up until it
+ * counts as a change. Used on the camera thread only.
+ */
+public class SceneChangeDetector {
+
+    private static final int GRID_COLUMNS = 32;
+    private static final int GRID_ROWS = 24;
+
+    /**
+     * Pixels sampled in both directions inside a grid cell
+     */
+    private static final int CELL_SAMPLES = 2;
+
+    /**
+     * Frames decoded after a change even if they look static, the camera may still be settling
+     */
+    private static final int SETTLE_FRAMES = 5;
+
+    private final int[] reference = new int[GRID_COLUMNS * GRID_ROWS];
+    private final int[] current = new int[GRID_COLUMNS * GRID_ROWS];
+    private final float changeThreshold;
+    private final int maxSkippedFrames;
+
+    private boolean hasReference;
+    private int settleFrames;
+    private int skippedInRow;
+
+    private volatile long evaluatedFrames;
+    private volatile long skippedFrames;
+
+    /**
+     * @param changeThreshold The mean absolute difference of the signatures (0-255) above which the scene has changed
+     * @param maxSkippedFrames A static scene is decoded again after this many skipped frames, 0 never decodes it again
+     */
+    public SceneChangeDetector(float changeThreshold, int maxSkippedFrames) {
+        this.changeThreshold = changeThreshold;
+        this.maxSkippedFrames = maxSkippedFrames;
+    }
+
+    /**
+     * Decides whether the frame has to be decoded
+     * @param plane The full camera frame
+     * @return True if the scene has changed since the last decoded frame
+     */
+    public boolean accept(LumaPlane plane) {
+        evaluatedFrames++;
+        computeSignature(plane, current);
+
+        if (!hasReference || difference(current, reference) > changeThreshold) {
+            System.arraycopy(current, 0, reference, 0, current.length);
+            hasReference = true;
+            settleFrames = SETTLE_FRAMES;
+            skippedInRow = 0;
+            return true;
+        }
+
+        if (settleFrames > 0) {
+            settleFrames--;
+            return true;
+        }
+
+        if (maxSkippedFrames > 0 && skippedInRow >= maxSkippedFrames) {
+            skippedInRow = 0;
+            return true;
+        }
+
+        skippedInRow++;
+        skippedFrames++;
+        return false;
+    }
+
+    /**
+     * Forgets the last scene, the next frame is decoded in any case
+     */
+    public void reset() {
+        hasReference = false;
+    }
+
+    public long getEvaluatedFrames() {
+        return evaluatedFrames;
+    }
+
+    public long getSkippedFrames() {
+        return skippedFrames;
+    }
+
+    private static void computeSignature(LumaPlane plane, int[] signature) {
+        int cellWidth = plane.getWidth() / GRID_COLUMNS;
+        int cellHeight = plane.getHeight() / GRID_ROWS;
+        int stepX = Math.max(1, cellWidth / CELL_SAMPLES);
+        int stepY = Math.max(1, cellHeight / CELL_SAMPLES);
+
+        int i = 0;
+        for (int row = 0; row < GRID_ROWS; row++) {
+            int top = row * cellHeight + stepY / 2;
+            for (int column = 0; column < GRID_COLUMNS; column++) {
+                int left = column * cellWidth + stepX / 2;
+                int sum = 0;
+                for (int sy = 0; sy < CELL_SAMPLES; sy++) {
+                    for (int sx = 0; sx < CELL_SAMPLES; sx++) {
+                        sum += plane.get(left + sx * stepX, top + sy * stepY);
+                    }
+                }
+                signature[i++] = sum / (CELL_SAMPLES * CELL_SAMPLES);
+            }
+        }
+    }
+
+    private static float difference(int[] a, int[] b) {
+        long sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += Math.abs(a[i] - b[i]);
+        }
+        return (float) sum / a.length;
+    }
+}
@@ -0,0 +1,124 @@
+package com.tsulok.qrcodereader.scan;
+
+/**
+ * Drops blurry frames before they reach the decoder.
+ * The focus score is the mean squared gradient on a sparse grid, read directly from the plane.
+ * A frame passes when its score reaches a fraction of the recent average, so the threshold
+ * follows the scene and the lighting. Used on the camera thread only.
+ */
+public class SharpnessGate {
+
+    /**
+     * Distance of the sampled pixels in both directions
+     */
+    private static final int GRID_STEP = 8;
+
+    /**
+     * Frames always passing while the average settles
+     */
+    private static final int WARMUP_FRAMES = 10;
+
+    /**
+     * Weight of the newest score in the running average
+     */
+    private static final float AVERAGE_WEIGHT = 0.1f;
+
+    private volatile float thresholdRatio;
+    private float averageScore;
+    private float lastScore;
+    private int settledFrames;
+
+    private volatile long evaluatedFrames;
+    private volatile long skippedFrames;
+
+    /**
+     * @param thresholdRatio A frame is skipped when its score is below this fraction of the running average
+     */
+    public SharpnessGate(float thresholdRatio) {
+        this.thresholdRatio = thresholdRatio;
+    }
+
+    /**
+     * Scores the frame and decides whether it is worth decoding
+     * @param plane The full camera frame
+     * @return True if the frame is sharp enough
+     */
+    public boolean accept(LumaPlane plane) {
+        float score = score(plane);
+        lastScore = score;
+        evaluatedFrames++;
+
+        if (settledFrames < WARMUP_FRAMES) {
+            settledFrames++;
+            averageScore += (score - averageScore) / settledFrames;
+            return true;
+        }
+
+        boolean sharp = score >= averageScore * thresholdRatio;
+        averageScore += (score - averageScore) * AVERAGE_WEIGHT;
+        if (!sharp) {
+            skippedFrames++;
+        }
+        return sharp;
+    }
+
+    /**
+     * Mean squared horizontal and vertical gradient on the sampling grid
+     */
+    public static float score(LumaPlane plane) {
+        int width = plane.getWidth() - 1;
+        int height = plane.getHeight() - 1;
+        long energy = 0;
+        int samples = 0;
+        for (int y = 0; y < height; y += GRID_STEP) {
+            for (int x = 0; x < width; x += GRID_STEP) {
+                int center = plane.get(x, y);
+                int dx = plane.get(x + 1, y) - center;
+                int dy = plane.get(x, y + 1) - center;
+                energy += dx * dx + dy * dy;
+                samples++;
+            }
+        }
+        return samples > 0 ? (float) energy / samples : 0f;
+    }
+
+    /**
+     * Restarts the running average, the scores of a different frame size are not comparable
+     */
+    public void reset() {
+        settledFrames = 0;
+        averageScore = 0f;
+    }
+
+    public void setThresholdRatio(float thresholdRatio) {
+        this.thresholdRatio = thresholdRatio;
+    }
+
+    public float getThresholdRatio() {
+        return thresholdRatio;
+    }
+
+    public float getLastScore() {
+        return lastScore;
+    }
+
+    public float getAverageScore() {
+        return averageScore;
+    }
+
+    public long getEvaluatedFrames() {
+        return evaluatedFrames;
+    }
+
+    public long getSkippedFrames() {
+        return skippedFrames;
+    }
+
+    /**
+     * @return The ratio of skipped frames, 0-1
+     */
+    public float getSkipRate() {
+        long evaluated = evaluatedFrames;
+        return evaluated > 0 ? (float) skippedFrames / evaluated : 0f;
+    }
+}
@@ -0,0 +1,192 @@
+package com.tsulok.qrcodereader.scan;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Reassembles structured append QR code sequences, whose data is split over up to 16 codes.
+ * The parts are collected across frames, a sequence is identified by its length and parity.
+ * Once every part has been seen, the parity of the joined data is checked and the whole
+ * payload is returned as one symbol, with the joined raw bytes if every part had them.
+ * A sequence holds at most 16 parts of at most {@link #MAX_PART_LENGTH} characters. Sequences
+ * without a new part for the time-to-live are dropped, as are the least recently seen ones above
+ * the limit.
+ * Thread safe.
+ */
+public class StructuredAppendAssembler {
+
+    /**
+     * The capacity of the largest QR code, in numeric mode
+     */
+    public static final int MAX_PART_LENGTH = 7089;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+
+    private final int maxSequences;
+    private final LinkedHashMap<Integer, Sequence> sequences;
+    private final long ttlNanos;
+
+    private long completed;
+    private long parityErrors;
+    private long evictions;
+
+    /**
+     * @param ttlMillis The time after which a sequence without a new part is dropped
+     * @param maxSequences The maximum number of sequences collected at the same time
+     */
+    public StructuredAppendAssembler(long ttlMillis, int maxSequences) {
+        this.maxSequences = maxSequences;
+        this.ttlNanos = ttlMillis * 1000000L;
+        this.sequences = new LinkedHashMap<Integer, Sequence>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Sequence> eldest) {
+                if (size() > StructuredAppendAssembler.this.maxSequences) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Adds a part to its sequence
+     * @param part A symbol for which {@link DecodedSymbol#isStructuredAppend} is true
+     * @return The whole payload if this was the last missing part, with the bounds of this part,
+     * otherwise null
+     */
+    public synchronized DecodedSymbol offer(DecodedSymbol part) {
+        if (!part.isStructuredAppend() || part.getData().length() > MAX_PART_LENGTH) {
+            return null;
+        }
+        long now = System.nanoTime();
+        evictStale(now);
+
+        int length = part.getSequenceLength();
+        int index = part.getSequenceIndex();
+        if (index >= length) {
+            return null;
+        }
+        Integer key = (part.getParity() << 8) | length;
+        Sequence sequence = sequences.get(key);
+        if (sequence == null) {
+            sequence = new Sequence(length);
+            sequences.put(key, sequence);
+        }
+        String known = sequence.parts[index];
+        if (known != null && !known.equals(part.getData())) {
+            // Another sequence with the same parity, the older parts are dropped
+            sequence = new Sequence(length);
+            sequences.put(key, sequence);
+        }
+        if (sequence.parts[index] == null) {
+            sequence.parts[index] = part.getData();
+            sequence.rawParts[index] = part.getRawBytes();
+            sequence.received++;
+        }
+        sequence.lastSeen = now;
+        if (sequence.received < length) {
+            return null;
+        }
+
+        sequences.remove(key);
+        StringBuilder payload = new StringBuilder();
+        for (String data : sequence.parts) {
+            payload.append(data);
+        }
+        String data = payload.toString();
+        byte[] rawBytes = join(sequence.rawParts);
+        if ((rawBytes == null || parity(rawBytes) != part.getParity()) && !checkParity(data, part.getParity())) {
+            parityErrors++;
+            return null;
+        }
+        completed++;
+        return new DecodedSymbol(part.getType(), data, part.getLeft(), part.getTop(),
+                part.getWidth(), part.getHeight(), rawBytes, DecodedSymbol.NO_SEQUENCE, 0);
+    }
+
+    /**
+     * Drops every sequence in progress
+     */
+    public synchronized void clear() {
+        sequences.clear();
+    }
+
+    /**
+     * @return The number of assembled payloads
+     */
+    public synchronized long getCompleted() {
+        return completed;
+    }
+
+    /**
+     * @return The number of complete sequences dropped for a wrong parity
+     */
+    public synchronized long getParityErrors() {
+        return parityErrors;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized int size() {
+        return sequences.size();
+    }
+
+    private void evictStale(long now) {
+        Iterator<Sequence> iterator = sequences.values().iterator();
+        while (iterator.hasNext()) {
+            if (now - iterator.next().lastSeen > ttlNanos) {
+                iterator.remove();
+                evictions++;
+            }
+        }
+    }
+
+    /**
+     * @return The parts joined, or null if any of them has no raw bytes
+     */
+    private static byte[] join(byte[][] rawParts) {
+        ByteArrayOutputStream joined = new ByteArrayOutputStream();
+        for (byte[] rawPart : rawParts) {
+            if (rawPart == null) {
+                return null;
+            }
+            joined.write(rawPart, 0, rawPart.length);
+        }
+        return joined.toByteArray();
+    }
+
+    /**
+     * The raw bytes may miss the segments not in byte mode, so the parity is also checked on
+     * the text: the UTF-8 and the Latin-1 encoding of the data are accepted
+     */
+    private static boolean checkParity(String data, int parity) {
+        return parity(data.getBytes(UTF_8)) == parity || parity(data.getBytes(ISO_8859_1)) == parity;
+    }
+
+    private static int parity(byte[] bytes) {
+        int parity = 0;
+        for (byte b : bytes) {
+            parity ^= b & 0xff;
+        }
+        return parity;
+    }
+
+    private static final class Sequence {
+        final String[] parts;
+        final byte[][] rawParts;
+        int received;
+        long lastSeen;
+
+        Sequence(int length) {
+            this.parts = new String[length];
+            this.rawParts = new byte[length][];
+        }
+    }
+}
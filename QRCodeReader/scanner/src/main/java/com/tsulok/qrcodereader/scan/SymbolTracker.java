@@ -0,0 +1,124 @@
+package com.tsulok.qrcodereader.scan;
+
+/**
+ * Follows the last decoded symbol across frames.
+ * The position in the next frame is predicted from the motion between the last two hits,
+ * and only a window around that is scanned. After several misses in a row the track is lost,
+ * and the regular, wider search takes over again.
+ * Updated by the decode workers, queried by the camera thread.
+ */
+public class SymbolTracker {
+
+    /**
+     * The window is larger than the symbol by this fraction on every side
+     */
+    private static final float WINDOW_MARGIN = 0.5f;
+    private static final int MIN_MARGIN = 32;
+
+    /**
+     * Motion is not extrapolated over gaps longer than this
+     */
+    private static final long MAX_PREDICTION_NANOS = 300000000L;
+
+    private final int maxMisses;
+
+    private boolean tracking;
+    private int misses;
+    private long lastTimestamp;
+    private float centerX;
+    private float centerY;
+    private int width;
+    private int height;
+    private float velocityX;
+    private float velocityY;
+
+    /**
+     * @param maxMisses The number of window scans in a row without a hit after which the track is lost
+     */
+    public SymbolTracker(int maxMisses) {
+        this.maxMisses = Math.max(1, maxMisses);
+    }
+
+    /**
+     * Predicts the window to scan in the next frame
+     * @param timestamp The capture time of the frame in nanoseconds
+     * @param frameWidth The width of the full frame
+     * @param frameHeight The height of the full frame
+     * @param window Filled with {left, top, width, height} of the window
+     * @return True if a symbol is tracked and the window has been filled
+     */
+    public synchronized boolean predict(long timestamp, int frameWidth, int frameHeight, int[] window) {
+        if (!tracking) {
+            return false;
+        }
+
+        long elapsed = Math.min(Math.max(0, timestamp - lastTimestamp), MAX_PREDICTION_NANOS);
+        float x = centerX + velocityX * elapsed;
+        float y = centerY + velocityY * elapsed;
+        int marginX = Math.max(MIN_MARGIN, (int) (width * WINDOW_MARGIN));
+        int marginY = Math.max(MIN_MARGIN, (int) (height * WINDOW_MARGIN));
+
+        int left = Math.max(0, (int) x - width / 2 - marginX);
+        int top = Math.max(0, (int) y - height / 2 - marginY);
+        int right = Math.min(frameWidth, (int) x + width / 2 + marginX);
+        int bottom = Math.min(frameHeight, (int) y + height / 2 + marginY);
+        if (right - left < 1 || bottom - top < 1) {
+            tracking = false;
+            return false;
+        }
+
+        window[0] = left;
+        window[1] = top;
+        window[2] = right - left;
+        window[3] = bottom - top;
+        return true;
+    }
+
+    /**
+     * Updates the track with the outcome of a decoded frame
+     * @param frame The scanned frame
+     * @param symbol The found symbol, or null
+     */
+    public synchronized void update(LumaFrame frame, DecodedSymbol symbol) {
+        if (symbol == null) {
+            if (frame.isTracked() && ++misses >= maxMisses) {
+                tracking = false;
+            }
+            return;
+        }
+
+        long timestamp = frame.getTimestamp();
+        float x = symbol.getCenterX();
+        float y = symbol.getCenterY();
+        if (tracking && timestamp > lastTimestamp) {
+            long elapsed = timestamp - lastTimestamp;
+            velocityX = elapsed < MAX_PREDICTION_NANOS ? (x - centerX) / elapsed : 0f;
+            velocityY = elapsed < MAX_PREDICTION_NANOS ? (y - centerY) / elapsed : 0f;
+        } else if (!tracking) {
+            velocityX = 0f;
+            velocityY = 0f;
+        }
+
+        if (timestamp >= lastTimestamp || !tracking) {
+            centerX = x;
+            centerY = y;
+            width = symbol.getWidth();
+            height = symbol.getHeight();
+            lastTimestamp = timestamp;
+        }
+        misses = 0;
+        tracking = true;
+    }
+
+    /**
+     * Drops the current track
+     */
+    public synchronized void reset() {
+        tracking = false;
+        misses = 0;
+    }
+
+    public synchronized boolean isTracking() {
+        return tracking;
+    }
+}
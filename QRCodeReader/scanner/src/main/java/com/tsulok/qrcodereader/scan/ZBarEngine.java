@@ -0,0 +1,127 @@
+package com.tsulok.qrcodereader.scan;
+
+import net.sourceforge.zbar.Config;
+import net.sourceforge.zbar.Image;
+import net.sourceforge.zbar.ImageScanner;
+import net.sourceforge.zbar.Symbol;
+import net.sourceforge.zbar.SymbolSet;
+
+import java.util.List;
+
+/**
+ * Decodes {@link LumaFrame}s with the native zbar library.
+ * The scanner and its image are created once and recycled for every frame.
+ * Not thread safe, each decoding thread should have its own instance.
+ */
+public class ZBarEngine implements IBarcodeEngine {
+
+    private static final String FORMAT_Y800 = "Y800";
+    private static final String NATIVE_LIBRARY = "zbarjni";
+
+    private static volatile Boolean nativeAvailable;
+
+    /**
+     * Every 3rd row and column is scanned by default
+     */
+    public static final int DEFAULT_DENSITY = 3;
+
+    private final ImageScanner imageScanner;
+    private final Image barcode;
+
+    public ZBarEngine() {
+        this(DEFAULT_DENSITY);
+    }
+
+    /**
+     * @param density The scan density, zbar scans every n-th row and column
+     */
+    public ZBarEngine(int density) {
+        imageScanner = new ImageScanner();
+        imageScanner.setConfig(0, Config.X_DENSITY, density);
+        imageScanner.setConfig(0, Config.Y_DENSITY, density);
+        barcode = new Image(FORMAT_Y800);
+    }
+
+    /**
+     * Checks whether the native library can be loaded on this platform,
+     * it is only built for a few ABIs
+     */
+    public static boolean isNativeAvailable() {
+        if (nativeAvailable == null) {
+            try {
+                System.loadLibrary(NATIVE_LIBRARY);
+                nativeAvailable = true;
+            } catch (UnsatisfiedLinkError e) {
+                nativeAvailable = false;
+            }
+        }
+        return nativeAvailable;
+    }
+
+    @Override
+    public void configure(ScanProfile profile) {
+        if (profile.isEverySymbologyEnabled()) {
+            imageScanner.setConfig(0, Config.ENABLE, 1);
+        } else {
+            imageScanner.setConfig(0, Config.ENABLE, 0);
+            for (int symbology : profile.getSymbologies()) {
+                imageScanner.setConfig(symbology, Config.ENABLE, 1);
+            }
+        }
+        imageScanner.setConfig(0, Config.X_DENSITY, profile.getXDensity());
+        imageScanner.setConfig(0, Config.Y_DENSITY, profile.getYDensity());
+    }
+
+    @Override
+    public DecodedSymbol decode(LumaFrame frame, int scale) {
+        barcode.setSize(frame.getWidth(), frame.getHeight());
+        barcode.setData(frame.getData());
+
+        if (imageScanner.scanImage(barcode) == 0) {
+            return null;
+        }
+
+        SymbolSet syms = imageScanner.getResults();
+        for (Symbol sym : syms) {
+            return toDecodedSymbol(sym, frame, scale);
+        }
+        return null;
+    }
+
+    /**
+     * zbar reports every code of the frame anyway, all of them are returned
+     */
+    @Override
+    public int decodeAll(LumaFrame frame, int scale, List<DecodedSymbol> found) {
+        barcode.setSize(frame.getWidth(), frame.getHeight());
+        barcode.setData(frame.getData());
+
+        if (imageScanner.scanImage(barcode) == 0) {
+            return 0;
+        }
+
+        int count = 0;
+        SymbolSet syms = imageScanner.getResults();
+        for (Symbol sym : syms) {
+            found.add(toDecodedSymbol(sym, frame, scale));
+            count++;
+        }
+        return count;
+    }
+
+    @Override
+    public void destroy() {
+        barcode.destroy();
+        imageScanner.destroy();
+    }
+
+    private static DecodedSymbol toDecodedSymbol(Symbol sym, LumaFrame frame, int scale) {
+        int[] bounds = sym.getBounds();
+        if (bounds == null) {
+            bounds = new int[]{0, 0, frame.getWidth(), frame.getHeight()};
+        }
+        return new DecodedSymbol(sym.getType(), sym.getData(),
+                frame.getLeft() + bounds[0] * scale, frame.getTop() + bounds[1] * scale,
+                bounds[2] * scale, bounds[3] * scale, sym.getDataBytes(), DecodedSymbol.NO_SEQUENCE, 0);
+    }
+}
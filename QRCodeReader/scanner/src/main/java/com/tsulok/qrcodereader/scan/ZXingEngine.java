@@ -0,0 +1,278 @@
+package com.tsulok.qrcodereader.scan;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.MultiFormatReader;
+import com.google.zxing.PlanarYUVLuminanceSource;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.ReaderException;
+import com.google.zxing.Result;
+import com.google.zxing.ResultMetadataType;
+import com.google.zxing.ResultPoint;
+import com.google.zxing.common.HybridBinarizer;
+import com.google.zxing.multi.GenericMultipleBarcodeReader;
+import com.google.zxing.multi.MultipleBarcodeReader;
+import com.google.zxing.multi.qrcode.QRCodeMultiReader;
+
+import net.sourceforge.zbar.Symbol;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decodes {@link LumaFrame}s with ZXing, in pure Java.
+ * The reader and its hints are created once and recycled for every frame.
+ * Not thread safe, each decoding thread should have its own instance.
+ */
+public class ZXingEngine implements IBarcodeEngine {
+
+    /**
+     * The formats with a zbar counterpart and their zbar {@code Symbol} constants.
+     * These are compile time constants, the native zbar classes are not loaded.
+     */
+    private static final BarcodeFormat[] FORMATS = {
+            BarcodeFormat.QR_CODE, BarcodeFormat.EAN_8, BarcodeFormat.EAN_13, BarcodeFormat.UPC_A,
+            BarcodeFormat.UPC_E, BarcodeFormat.CODE_39, BarcodeFormat.CODE_93, BarcodeFormat.CODE_128,
+            BarcodeFormat.CODABAR, BarcodeFormat.ITF, BarcodeFormat.PDF_417, BarcodeFormat.RSS_14,
+            BarcodeFormat.RSS_EXPANDED};
+    private static final int[] SYMBOLOGIES = {
+            Symbol.QRCODE, Symbol.EAN8, Symbol.EAN13, Symbol.UPCA,
+            Symbol.UPCE, Symbol.CODE39, Symbol.CODE93, Symbol.CODE128,
+            Symbol.CODABAR, Symbol.I25, Symbol.PDF417, Symbol.DATABAR,
+            Symbol.DATABAR_EXP};
+
+    private static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final MultiFormatReader reader = new MultiFormatReader();
+
+    /**
+     * The readers of {@link #decodeAll}. The single code readers give up on a frame with several
+     * QR codes, QR codes are found by their finder patterns, the other formats by
+     * decoding again around every found code. Null if no such format is enabled.
+     */
+    private QRCodeMultiReader qrReader;
+    private MultipleBarcodeReader otherReader;
+    private Map<DecodeHintType, Object> otherHints;
+
+    /**
+     * Decodes QR codes only
+     */
+    public ZXingEngine() {
+        this(EnumSet.of(BarcodeFormat.QR_CODE));
+    }
+
+    /**
+     * @param formats The symbologies to look for
+     */
+    public ZXingEngine(Collection<BarcodeFormat> formats) {
+        setFormats(formats);
+    }
+
+    @Override
+    public void configure(ScanProfile profile) {
+        if (profile.isEverySymbologyEnabled()) {
+            setFormats(null);
+            return;
+        }
+        Collection<BarcodeFormat> formats = EnumSet.noneOf(BarcodeFormat.class);
+        for (int symbology : profile.getSymbologies()) {
+            BarcodeFormat format = toFormat(symbology);
+            if (format != null) {
+                formats.add(format);
+            }
+        }
+        setFormats(formats);
+    }
+
+    @Override
+    public DecodedSymbol decode(LumaFrame frame, int scale) {
+        int width = frame.getWidth();
+        int height = frame.getHeight();
+        PlanarYUVLuminanceSource source = new PlanarYUVLuminanceSource(frame.getData(),
+                width, height, 0, 0, width, height, false);
+
+        Result result;
+        try {
+            result = reader.decodeWithState(new BinaryBitmap(new HybridBinarizer(source)));
+        } catch (ReaderException e) {
+            return null;
+        } finally {
+            reader.reset();
+        }
+
+        return toDecodedSymbol(result, frame, scale);
+    }
+
+    @Override
+    public int decodeAll(LumaFrame frame, int scale, List<DecodedSymbol> found) {
+        int width = frame.getWidth();
+        int height = frame.getHeight();
+        PlanarYUVLuminanceSource source = new PlanarYUVLuminanceSource(frame.getData(),
+                width, height, 0, 0, width, height, false);
+
+        BinaryBitmap bitmap = new BinaryBitmap(new HybridBinarizer(source));
+        int count = 0;
+        if (qrReader != null) {
+            count += decodeAll(qrReader, bitmap, null, frame, scale, found);
+        }
+        if (otherReader != null) {
+            count += decodeAll(otherReader, bitmap, otherHints, frame, scale, found);
+        }
+        return count;
+    }
+
+    @Override
+    public void destroy() {
+        // Nothing to release
+    }
+
+    /**
+     * @param formats The symbologies to look for, null for every format ZXing supports
+     */
+    private void setFormats(Collection<BarcodeFormat> formats) {
+        Map<DecodeHintType, Object> hints = new EnumMap<>(DecodeHintType.class);
+        if (formats != null) {
+            hints.put(DecodeHintType.POSSIBLE_FORMATS, formats);
+        }
+        reader.setHints(hints);
+
+        Collection<BarcodeFormat> otherFormats = EnumSet.allOf(BarcodeFormat.class);
+        if (formats != null) {
+            otherFormats.retainAll(formats);
+        }
+        qrReader = otherFormats.remove(BarcodeFormat.QR_CODE) ? new QRCodeMultiReader() : null;
+        if (otherFormats.isEmpty()) {
+            otherReader = null;
+            otherHints = null;
+        } else {
+            otherHints = new EnumMap<>(DecodeHintType.class);
+            otherHints.put(DecodeHintType.POSSIBLE_FORMATS, otherFormats);
+            otherReader = new GenericMultipleBarcodeReader(new MultiFormatReader());
+        }
+    }
+
+    private static int decodeAll(MultipleBarcodeReader multiReader, BinaryBitmap bitmap,
+                                 Map<DecodeHintType, Object> hints, LumaFrame frame, int scale,
+                                 List<DecodedSymbol> found) {
+        Result[] results;
+        try {
+            results = multiReader.decodeMultiple(bitmap, hints);
+        } catch (NotFoundException e) {
+            return 0;
+        }
+        int count = 0;
+        for (Result result : results) {
+            // The QR reader adds the unchecked concatenation of the structured append parts of
+            // the frame, without points. The parts are assembled across frames instead.
+            if (result.getResultPoints() == null || result.getResultPoints().length == 0) {
+                continue;
+            }
+            found.add(toDecodedSymbol(result, frame, scale));
+            count++;
+        }
+        return count;
+    }
+
+    private static DecodedSymbol toDecodedSymbol(Result result, LumaFrame frame, int scale) {
+        int[] bounds = bounds(result.getResultPoints(), frame.getWidth(), frame.getHeight());
+        int sequence = DecodedSymbol.NO_SEQUENCE;
+        int parity = 0;
+        Map<ResultMetadataType, Object> metadata = result.getResultMetadata();
+        if (metadata != null && metadata.containsKey(ResultMetadataType.STRUCTURED_APPEND_SEQUENCE)) {
+            sequence = (Integer) metadata.get(ResultMetadataType.STRUCTURED_APPEND_SEQUENCE);
+            parity = (Integer) metadata.get(ResultMetadataType.STRUCTURED_APPEND_PARITY);
+        }
+        return new DecodedSymbol(toSymbolType(result.getBarcodeFormat()), result.getText(),
+                frame.getLeft() + bounds[0] * scale, frame.getTop() + bounds[1] * scale,
+                bounds[2] * scale, bounds[3] * scale, rawBytes(result), sequence, parity);
+    }
+
+    /**
+     * The bytes of the byte mode segments, or the text itself if it has none: the numeric and
+     * alphanumeric modes only hold ASCII. Null if there is no such byte representation.
+     * The segments of a mixed mode code miss the text of its other modes, so they are only returned
+     * if they decode to the whole text, as UTF-8 or Latin-1. Otherwise only the text is known.
+     */
+    @SuppressWarnings("unchecked")
+    private static byte[] rawBytes(Result result) {
+        Map<ResultMetadataType, Object> metadata = result.getResultMetadata();
+        List<byte[]> segments = metadata != null
+                ? (List<byte[]>) metadata.get(ResultMetadataType.BYTE_SEGMENTS) : null;
+        if (segments == null) {
+            String text = result.getText();
+            return ISO_8859_1.newEncoder().canEncode(text) ? text.getBytes(ISO_8859_1) : null;
+        }
+        byte[] joined;
+        if (segments.size() == 1) {
+            joined = segments.get(0);
+        } else {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            for (byte[] segment : segments) {
+                bytes.write(segment, 0, segment.length);
+            }
+            joined = bytes.toByteArray();
+        }
+        String text = result.getText();
+        if (text.equals(new String(joined, UTF_8)) || text.equals(new String(joined, ISO_8859_1))) {
+            return joined;
+        }
+        return null;
+    }
+
+    /**
+     * The box around the result points, like the zbar bounds: {x, y, w, h}.
+     * For QR codes these are the finder pattern centers, so the box is slightly smaller than the code.
+     */
+    private static int[] bounds(ResultPoint[] points, int width, int height) {
+        float minX = Float.MAX_VALUE;
+        float minY = Float.MAX_VALUE;
+        float maxX = -1;
+        float maxY = -1;
+        if (points != null) {
+            for (ResultPoint point : points) {
+                if (point == null) {
+                    continue;
+                }
+                minX = Math.min(minX, point.getX());
+                minY = Math.min(minY, point.getY());
+                maxX = Math.max(maxX, point.getX());
+                maxY = Math.max(maxY, point.getY());
+            }
+        }
+        if (maxX < 0) {
+            return new int[]{0, 0, width, height};
+        }
+        int left = Math.max(0, (int) minX);
+        int top = Math.max(0, (int) minY);
+        return new int[]{left, top,
+                Math.max(1, (int) maxX - left), Math.max(1, (int) maxY - top)};
+    }
+
+    /**
+     * Maps the format to the zbar symbology constants used by {@link DecodedSymbol}
+     */
+    private static int toSymbolType(BarcodeFormat format) {
+        for (int i = 0; i < FORMATS.length; i++) {
+            if (FORMATS[i] == format) {
+                return SYMBOLOGIES[i];
+            }
+        }
+        return Symbol.NONE;
+    }
+
+    private static BarcodeFormat toFormat(int symbology) {
+        for (int i = 0; i < SYMBOLOGIES.length; i++) {
+            if (SYMBOLOGIES[i] == symbology) {
+                return FORMATS[i];
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,111 @@
+package com.tsulok.qrcodereader.scan;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks the copies of {@link LumaPlane} against the pixels read in place,
+ * on planes shaped like the camera ones: the last row has no padding.
+ */
+public class LumaPlaneTest {
+
+    private static final int WIDTH = 64;
+    private static final int HEIGHT = 48;
+
+    @Test
+    public void copiesPackedPlane() {
+        assertWholeCopy(createPlane(WIDTH, 1, 0), WIDTH, 1);
+    }
+
+    @Test
+    public void skipsRowPadding() {
+        assertWholeCopy(createPlane(WIDTH + 16, 1, 0), WIDTH + 16, 1);
+    }
+
+    @Test
+    public void skipsInterleavedPixels() {
+        assertWholeCopy(createPlane(2 * WIDTH + 8, 2, 0), 2 * WIDTH + 8, 2);
+    }
+
+    @Test
+    public void startsAtBufferPosition() {
+        ByteBuffer buffer = createPlane(WIDTH + 16, 1, 5);
+        buffer.position(5);
+        assertWholeCopy(buffer, WIDTH + 16, 1);
+    }
+
+    @Test
+    public void copiesRegionOfPaddedPlane() {
+        assertRegionCopy(WIDTH + 16, 1);
+    }
+
+    @Test
+    public void copiesRegionOfInterleavedPlane() {
+        assertRegionCopy(2 * WIDTH + 8, 2);
+    }
+
+    @Test
+    public void copiesFullWidthRowsOfPackedPlane() {
+        ByteBuffer buffer = createPlane(WIDTH, 1, 0);
+        LumaPlane plane = new LumaPlane();
+        plane.wrap(buffer, WIDTH, HEIGHT, WIDTH, 1);
+        LumaFrame frame = new LumaFrame(0);
+
+        plane.copyRegionTo(frame, 0, 10, WIDTH, 20);
+
+        assertRegion(plane, frame, 0, 10, WIDTH, 20);
+    }
+
+    private static void assertWholeCopy(ByteBuffer buffer, int rowStride, int pixelStride) {
+        int position = buffer.position();
+        LumaPlane plane = new LumaPlane();
+        plane.wrap(buffer, WIDTH, HEIGHT, rowStride, pixelStride);
+        LumaFrame frame = new LumaFrame(0);
+
+        plane.copyTo(frame);
+
+        assertEquals(WIDTH, frame.getWidth());
+        assertEquals(HEIGHT, frame.getHeight());
+        assertRegion(plane, frame, 0, 0, WIDTH, HEIGHT);
+        assertEquals(position, buffer.position());
+    }
+
+    private static void assertRegionCopy(int rowStride, int pixelStride) {
+        LumaPlane plane = new LumaPlane();
+        plane.wrap(createPlane(rowStride, pixelStride, 0), WIDTH, HEIGHT, rowStride, pixelStride);
+        LumaFrame frame = new LumaFrame(0);
+
+        // The region touches the last, unpadded row
+        plane.copyRegionTo(frame, 7, HEIGHT - 13, 21, 13);
+
+        assertEquals(7, frame.getLeft());
+        assertEquals(HEIGHT - 13, frame.getTop());
+        assertRegion(plane, frame, 7, HEIGHT - 13, 21, 13);
+    }
+
+    private static void assertRegion(LumaPlane plane, LumaFrame frame, int left, int top, int width, int height) {
+        assertEquals(width, frame.getWidth());
+        assertEquals(height, frame.getHeight());
+        byte[] data = frame.getData();
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                assertEquals("Pixel " + x + "," + y, plane.get(left + x, top + y), data[y * width + x] & 0xff);
+            }
+        }
+    }
+
+    /**
+     * A direct buffer with distinct values for the pixels and the padding
+     */
+    private static ByteBuffer createPlane(int rowStride, int pixelStride, int offset) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(offset + rowStride * (HEIGHT - 1)
+                + (WIDTH - 1) * pixelStride + 1);
+        for (int i = 0; i < buffer.capacity(); i++) {
+            buffer.put(i, (byte) (i * 31 + 7));
+        }
+        return buffer;
+    }
+}
@@ -0,0 +1,217 @@
+package com.tsulok.qrcodereader.scan;
+
+import net.sourceforge.zbar.Symbol;
+
+import org.junit.Test;
+
+import java.nio.charset.Charset;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PayloadParserTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+
+    private static final String GS = "\u001d";
+
+    @Test
+    public void parsesPlainText() {
+        ParsedPayload payload = parseQr("Hello world");
+
+        assertEquals(PayloadType.TEXT, payload.getType());
+        assertEquals("Hello world", payload.getDisplayText());
+        assertTrue(payload.getFields().isEmpty());
+    }
+
+    @Test
+    public void parsesUrls() {
+        ParsedPayload payload = parseQr("https://example.com/a%20b");
+        assertEquals(PayloadType.URL, payload.getType());
+        assertEquals("https://example.com/a%20b", payload.get(PayloadParser.URL));
+        assertEquals("https://example.com/a b", payload.getDisplayText());
+
+        payload = parseQr("HTTP://EXAMPLE.COM");
+        assertEquals(PayloadType.URL, payload.getType());
+
+        payload = parseQr("URLTO:example.com/path");
+        assertEquals(PayloadType.URL, payload.getType());
+        assertEquals("example.com/path", payload.get(PayloadParser.URL));
+    }
+
+    @Test
+    public void parsesWifi() {
+        ParsedPayload payload = parseQr("WIFI:T:WPA;S:my\\;net;P:pa\\:ss;H:true;;");
+
+        assertEquals(PayloadType.WIFI, payload.getType());
+        assertEquals("WPA", payload.get(PayloadParser.WIFI_SECURITY));
+        assertEquals("my;net", payload.get(PayloadParser.WIFI_SSID));
+        assertEquals("pa:ss", payload.get(PayloadParser.WIFI_PASSWORD));
+        assertEquals("true", payload.get(PayloadParser.WIFI_HIDDEN));
+        assertEquals("my;net", payload.getDisplayText());
+    }
+
+    @Test
+    public void parsesVCard() {
+        ParsedPayload payload = parseQr("BEGIN:VCARD\r\nVERSION:3.0\r\nN:Doe;John;;;\r\nFN:John Doe\r\n"
+                + "item1.TEL;TYPE=CELL:+123\r\nTEL:+456\r\nEMAIL:j@x.org\r\nORG:Acme\\, Inc.\r\n"
+                + "ADR:;;Main\r\n  Street\r\nEND:VCARD");
+
+        assertEquals(PayloadType.VCARD, payload.getType());
+        assertEquals("John Doe", payload.getDisplayText());
+        assertEquals("Doe John", payload.get(PayloadParser.VCARD_STRUCTURED_NAME));
+        assertEquals("+123", payload.get(PayloadParser.VCARD_PHONE));
+        assertEquals("j@x.org", payload.get(PayloadParser.VCARD_EMAIL));
+        assertEquals("Acme, Inc.", payload.get(PayloadParser.VCARD_ORGANIZATION));
+        assertEquals("Main Street", payload.get(PayloadParser.VCARD_ADDRESS));
+    }
+
+    @Test
+    public void showsStructuredNameWithoutFormattedName() {
+        ParsedPayload payload = parseQr("BEGIN:VCARD\nN:Doe;Jane\nEND:VCARD");
+
+        assertEquals(PayloadType.VCARD, payload.getType());
+        assertEquals("Doe Jane", payload.getDisplayText());
+    }
+
+    @Test
+    public void parsesGs1ElementString() {
+        ParsedPayload payload = PayloadParser.parse(Symbol.CODE128,
+                "]C1" + "0109501101020917" + "17250101" + "10ABC123" + GS + "21XYZ", null);
+
+        assertEquals(PayloadType.GS1, payload.getType());
+        assertEquals("09501101020917", payload.get("01"));
+        assertEquals("250101", payload.get("17"));
+        assertEquals("ABC123", payload.get("10"));
+        assertEquals("XYZ", payload.get("21"));
+        assertEquals("(01)09501101020917(17)250101(10)ABC123(21)XYZ", payload.getDisplayText());
+    }
+
+    @Test
+    public void parsesGs1ApplicationIdentifierLengths() {
+        // 410 has 3 digits and 13 value digits, 3103 has 4 digits and 6, 7003 has 4 digits
+        ParsedPayload payload = PayloadParser.parse(Symbol.CODE128,
+                "]C1" + "4101234567890123" + "3103000125" + "70032501011200", null);
+
+        assertEquals(PayloadType.GS1, payload.getType());
+        assertEquals("1234567890123", payload.get("410"));
+        assertEquals("000125", payload.get("3103"));
+        assertEquals("2501011200", payload.get("7003"));
+    }
+
+    @Test
+    public void parsesGs1Variants() {
+        ParsedPayload bracketed = PayloadParser.parse(Symbol.CODE128, "(01)09501101020917(10)ABC", null);
+        assertEquals(PayloadType.GS1, bracketed.getType());
+        assertEquals("ABC", bracketed.get("10"));
+
+        ParsedPayload bracketedQr = parseQr("]Q3" + "(01)09501101020917(3103)000500");
+        assertEquals(PayloadType.GS1, bracketedQr.getType());
+        assertEquals("000500", bracketedQr.get("3103"));
+
+        ParsedPayload leadingSeparator = parseQr(GS + "0109501101020917" + "10ABC");
+        assertEquals(PayloadType.GS1, leadingSeparator.getType());
+        assertEquals("09501101020917", leadingSeparator.get("01"));
+
+        ParsedPayload dataBar = PayloadParser.parse(Symbol.DATABAR, "0109501101020917", null);
+        assertEquals(PayloadType.GS1, dataBar.getType());
+        assertEquals("09501101020917", dataBar.get("01"));
+    }
+
+    @Test
+    public void fallsBackToTextForInvalidGs1() {
+        // 01 needs 14 digits
+        ParsedPayload payload = PayloadParser.parse(Symbol.CODE128, "]C1" + "01123", null);
+
+        assertEquals(PayloadType.TEXT, payload.getType());
+        assertEquals("]C1" + "01123", payload.getDisplayText());
+    }
+
+    @Test
+    public void keepsBracketedTextWithoutGs1Context() {
+        assertEquals(PayloadType.TEXT, parseQr("(555)123-4567").getType());
+        assertEquals(PayloadType.TEXT, parseQr("(2024)Annual report").getType());
+        assertEquals(PayloadType.TEXT, parseQr("(01)09501101020917").getType());
+        // 555 is not an application identifier
+        assertEquals(PayloadType.TEXT, PayloadParser.parse(Symbol.CODE128, "(555)123-4567", null).getType());
+        // 01 needs 14 digits
+        assertEquals(PayloadType.TEXT, PayloadParser.parse(Symbol.CODE128, "(01)123(10)ABC", null).getType());
+    }
+
+    @Test
+    public void fallsBackToTextForUnclosedBracket() {
+        ParsedPayload separated = PayloadParser.parse(Symbol.CODE128, "(A" + GS + "B", null);
+        assertEquals(PayloadType.TEXT, separated.getType());
+
+        ParsedPayload dataBar = PayloadParser.parse(Symbol.DATABAR_EXP, "(01", null);
+        assertEquals(PayloadType.TEXT, dataBar.getType());
+        assertEquals("(01", dataBar.getDisplayText());
+    }
+
+    @Test
+    public void parsesBinary() {
+        byte[] rawBytes = {0x00, 0x01, 0x02, (byte) 0xff};
+        ParsedPayload payload = PayloadParser.parse(Symbol.QRCODE, new String(rawBytes, ISO_8859_1), rawBytes);
+
+        assertEquals(PayloadType.BINARY, payload.getType());
+        assertEquals("00 01 02 ff", payload.getDisplayText());
+        assertArrayEquals(rawBytes, payload.getRawBytes());
+    }
+
+    @Test
+    public void shortensLongBinary() {
+        byte[] rawBytes = new byte[40];
+        ParsedPayload payload = PayloadParser.parse(Symbol.QRCODE, new String(rawBytes, ISO_8859_1), rawBytes);
+
+        assertEquals(PayloadType.BINARY, payload.getType());
+        assertTrue(payload.getDisplayText().endsWith(" ..."));
+    }
+
+    @Test
+    public void classifiesHighBytes() {
+        // Valid UTF-8 and Latin-1 letters are text
+        assertFalse(PayloadParser.isBinary("Gr\u00fc\u00dfe \u20ac".getBytes(UTF_8)));
+        assertFalse(PayloadParser.isBinary("Gr\u00fc\u00dfe".getBytes(ISO_8859_1)));
+        // A lone continuation byte, which is a C1 control character in Latin-1
+        assertTrue(PayloadParser.isBinary(new byte[]{'A', (byte) 0x85, 'B'}));
+        // White space and the GS1 separator are text, other control characters are not
+        assertFalse(PayloadParser.isBinary("a\tb\r\nc\u001d".getBytes(ISO_8859_1)));
+        assertTrue(PayloadParser.isBinary(new byte[]{'a', 0x7f}));
+        assertFalse(PayloadParser.isBinary(null));
+    }
+
+    @Test
+    public void parsesTextOfUtf8Bytes() {
+        String text = "https://example.com/Gr\u00fc\u00dfe";
+        ParsedPayload payload = PayloadParser.parse(Symbol.QRCODE, text, text.getBytes(UTF_8));
+
+        assertEquals(PayloadType.URL, payload.getType());
+        assertEquals(text, payload.getText());
+    }
+
+    @Test
+    public void parsesMixedModeByText() {
+        // Mixed mode codes only have their text, the byte segments miss the other modes
+        ParsedPayload payload = PayloadParser.parse(Symbol.QRCODE, "WIFI:S:NET1234567890;T:WPA;P:x;;", null);
+
+        assertEquals(PayloadType.WIFI, payload.getType());
+        assertEquals("NET1234567890", payload.getDisplayText());
+        assertNull(payload.getRawBytes());
+    }
+
+    @Test
+    public void decodesPercentEscapes() {
+        assertEquals("a b\u20ac", PayloadParser.percentDecode("a%20b%E2%82%AC"));
+        assertEquals("100%", PayloadParser.percentDecode("100%"));
+        assertEquals("%zz%4", PayloadParser.percentDecode("%zz%4"));
+        assertEquals("plain", PayloadParser.percentDecode("plain"));
+    }
+
+    private static ParsedPayload parseQr(String text) {
+        return PayloadParser.parse(Symbol.QRCODE, text, text.getBytes(UTF_8));
+    }
+}
@@ -0,0 +1,310 @@
+package com.tsulok.qrcodereader.scan;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ScanHistoryLogTest {
+
+    private static final String LOG_FILE = "scans.log";
+    private static final String INDEX_FILE = "scans.idx";
+
+    /**
+     * The log header, then per record its length, CRC, time, symbology and bounds
+     */
+    private static final int FIRST_RECORD = 8;
+    private static final int RECORD_OVERHEAD = 8 + 8 + 4 + 4 * 4;
+
+    /**
+     * The payloads of {@link #payload} all have this length
+     */
+    private static final int PAYLOAD_LENGTH = 9;
+    private static final int RECORD_SIZE = RECORD_OVERHEAD + PAYLOAD_LENGTH;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void findsRecordsAfterReopen() throws IOException {
+        File directory = folder.newFolder();
+        append(directory, 0, 20);
+
+        ScanHistoryLog log = ScanHistoryLog.open(directory);
+        try {
+            assertEquals(20, log.size());
+            List<ScanRecord> records = log.findByTime(1005, 1008, 10);
+            assertEquals(4, records.size());
+            assertEquals(payload(5), records.get(0).getPayload());
+            assertEquals(payload(8), records.get(3).getPayload());
+            assertEquals(1005, records.get(0).getTimestamp());
+            assertEquals(64, records.get(0).getSymbology());
+            assertEquals(5, records.get(0).getLeft());
+        } finally {
+            log.close();
+        }
+    }
+
+    @Test
+    public void limitsTimeLookup() throws IOException {
+        File directory = folder.newFolder();
+        append(directory, 0, 20);
+
+        ScanHistoryLog log = ScanHistoryLog.open(directory);
+        try {
+            List<ScanRecord> records = log.findByTime(0, Long.MAX_VALUE, 3);
+            assertEquals(3, records.size());
+            assertEquals(payload(0), records.get(0).getPayload());
+        } finally {
+            log.close();
+        }
+    }
+
+    @Test
+    public void findsTimesAfterClockWasSetBack() throws IOException {
+        File directory = folder.newFolder();
+        ScanHistoryLog log = ScanHistoryLog.open(directory);
+        try {
+            appendAndWait(log, new ScanRecord(2000, 64, "a", 0, 0, 0, 0));
+            appendAndWait(log, new ScanRecord(1000, 64, "b", 0, 0, 0, 0));
+            appendAndWait(log, new ScanRecord(1500, 64, "c", 0, 0, 0, 0));
+        } finally {
+            log.close();
+        }
+
+        log = ScanHistoryLog.open(directory);
+        try {
+            List<ScanRecord> records = log.findByTime(1000, 1500, 10);
+            assertEquals(2, records.size());
+            assertEquals("b", records.get(0).getPayload());
+            assertEquals("c", records.get(1).getPayload());
+        } finally {
+            log.close();
+        }
+    }
+
+    @Test
+    public void findsPayloadPrefixes() throws IOException {
+        File directory = folder.newFolder();
+        ScanHistoryLog log = ScanHistoryLog.open(directory);
+        try {
+            appendAndWait(log, new ScanRecord(1, 64, "http://example.com/path/a", 0, 0, 0, 0));
+            appendAndWait(log, new ScanRecord(2, 64, "WIFI:S:home;;", 0, 0, 0, 0));
+            appendAndWait(log, new ScanRecord(3, 64, "http://example.com/path/b", 0, 0, 0, 0));
+            appendAndWait(log, new ScanRecord(4, 64, "http://example.org", 0, 0, 0, 0));
+        } finally {
+            log.close();
+        }
+
+        log = ScanHistoryLog.open(directory);
+        try {
+            assertEquals(3, log.findByPayloadPrefix("http://", 10).size());
+            assertEquals(1, log.findByPayloadPrefix("WIFI:", 10).size());
+            assertEquals(0, log.findByPayloadPrefix("BEGIN:VCARD", 10).size());
+            assertEquals(1, log.findByPayloadPrefix("http://", 1).size());
+
+            // Longer than the indexed key, the rest is checked on the records
+            List<ScanRecord> records = log.findByPayloadPrefix("http://example.com/path/b", 10);
+            assertEquals(1, records.size());
+            assertEquals(3, records.get(0).getTimestamp());
+            assertEquals(2, log.findByPayloadPrefix("http://example.com/path/", 10).size());
+        } finally {
+            log.close();
+        }
+    }
+
+    @Test
+    public void recoversRecordsAfterLastCheckpoint() throws IOException {
+        File directory = folder.newFolder();
+        append(directory, 0, 10);
+        File oldIndex = folder.newFile();
+        Files.copy(new File(directory, INDEX_FILE).toPath(), oldIndex.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        append(directory, 10, 10);
+        Files.copy(oldIndex.toPath(), new File(directory, INDEX_FILE).toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+        ScanHistoryLog log = ScanHistoryLog.open(directory);
+        try {
+            assertEquals(20, log.size());
+            assertEquals(payload(15), log.findByTime(1015, 1015, 1).get(0).getPayload());
+            assertEquals(1, log.findByPayloadPrefix(payload(19), 10).size());
+        } finally {
+            log.close();
+        }
+    }
+
+    @Test
+    public void endsAtCorruptedRecord() throws IOException {
+        File directory = folder.newFolder();
+        append(directory, 0, 20);
+        assertTrue(new File(directory, INDEX_FILE).delete());
+        RandomAccessFile file = new RandomAccessFile(new File(directory, LOG_FILE), "rw");
+        try {
+            long payloadOffset = FIRST_RECORD + 15L * RECORD_SIZE + RECORD_OVERHEAD;
+            file.seek(payloadOffset);
+            int value = file.read();
+            file.seek(payloadOffset);
+            file.write(value ^ 0xff);
+        } finally {
+            file.close();
+        }
+
+        ScanHistoryLog log = ScanHistoryLog.open(directory);
+        try {
+            assertEquals(15, log.size());
+            // New records continue after the last valid one
+            appendAndWait(log, new ScanRecord(5000, 64, payload(99), 0, 0, 0, 0));
+        } finally {
+            log.close();
+        }
+
+        log = ScanHistoryLog.open(directory);
+        try {
+            assertEquals(16, log.size());
+            assertEquals(payload(99), log.findByTime(5000, 5000, 1).get(0).getPayload());
+            assertEquals(0, log.findByTime(1015, 1019, 10).size());
+        } finally {
+            log.close();
+        }
+    }
+
+    @Test
+    public void dropsCheckpointBeyondTruncatedLog() throws IOException {
+        File directory = folder.newFolder();
+        append(directory, 0, 20);
+        RandomAccessFile file = new RandomAccessFile(new File(directory, LOG_FILE), "rw");
+        try {
+            // Cuts the 16th record, the checkpoint covers all 20
+            file.setLength(FIRST_RECORD + 15L * RECORD_SIZE + RECORD_SIZE / 2);
+        } finally {
+            file.close();
+        }
+
+        ScanHistoryLog log = ScanHistoryLog.open(directory);
+        try {
+            assertEquals(15, log.size());
+            assertEquals(0, log.findByPayloadPrefix(payload(15), 10).size());
+            assertEquals(1, log.findByPayloadPrefix(payload(14), 10).size());
+        } finally {
+            log.close();
+        }
+    }
+
+    @Test
+    public void ignoresDamagedIndex() throws IOException {
+        File directory = folder.newFolder();
+        append(directory, 0, 20);
+        RandomAccessFile file = new RandomAccessFile(new File(directory, INDEX_FILE), "rw");
+        try {
+            // The record count of the header, its CRC does not match anymore
+            file.seek(8);
+            file.writeLong(1000);
+        } finally {
+            file.close();
+        }
+
+        ScanHistoryLog log = ScanHistoryLog.open(directory);
+        try {
+            assertEquals(20, log.size());
+            assertEquals(4, log.findByTime(1000, 1003, 10).size());
+        } finally {
+            log.close();
+        }
+    }
+
+    @Test
+    public void skipsToNextChunk() throws IOException {
+        File directory = folder.newFolder();
+        // Enough large records to fill more than one chunk
+        int count = ScanHistoryLog.CHUNK_SIZE / ScanHistoryLog.MAX_PAYLOAD_SIZE + 8;
+        ScanHistoryLog log = ScanHistoryLog.open(directory);
+        try {
+            for (int i = 0; i < count; i++) {
+                appendAndWait(log, new ScanRecord(i, 64, largePayload(i), 0, 0, 0, 0));
+            }
+        } finally {
+            log.close();
+        }
+        assertTrue(new File(directory, LOG_FILE).length() > ScanHistoryLog.CHUNK_SIZE);
+        assertTrue(new File(directory, INDEX_FILE).delete());
+
+        log = ScanHistoryLog.open(directory);
+        try {
+            assertEquals(count, log.size());
+            List<ScanRecord> records = log.findByTime(0, count, count);
+            assertEquals(count, records.size());
+            for (int i = 0; i < count; i++) {
+                assertEquals(largePayload(i), records.get(i).getPayload());
+            }
+        } finally {
+            log.close();
+        }
+    }
+
+    @Test
+    public void cutsLongPayloads() throws IOException {
+        File directory = folder.newFolder();
+        StringBuilder payload = new StringBuilder();
+        while (payload.length() <= ScanHistoryLog.MAX_PAYLOAD_SIZE) {
+            payload.append("0123456789");
+        }
+        ScanHistoryLog log = ScanHistoryLog.open(directory);
+        try {
+            appendAndWait(log, new ScanRecord(1, 64, payload.toString(), 0, 0, 0, 0));
+        } finally {
+            log.close();
+        }
+
+        log = ScanHistoryLog.open(directory);
+        try {
+            String stored = log.findByTime(1, 1, 1).get(0).getPayload();
+            assertEquals(payload.substring(0, ScanHistoryLog.MAX_PAYLOAD_SIZE), stored);
+        } finally {
+            log.close();
+        }
+    }
+
+    /**
+     * Appends the records, closing the log writes and checkpoints them
+     */
+    private static void append(File directory, int first, int count) throws IOException {
+        ScanHistoryLog log = ScanHistoryLog.open(directory);
+        try {
+            for (int i = first; i < first + count; i++) {
+                appendAndWait(log, new ScanRecord(1000 + i, 64, payload(i), i, i, 10, 10));
+            }
+        } finally {
+            log.close();
+        }
+    }
+
+    /**
+     * Retries while the queue of the writer is full
+     */
+    private static void appendAndWait(ScanHistoryLog log, ScanRecord record) {
+        while (!log.append(record)) {
+            Thread.yield();
+        }
+    }
+
+    private static String payload(int i) {
+        return String.format(Locale.US, "code-%04d", i);
+    }
+
+    private static String largePayload(int i) {
+        StringBuilder payload = new StringBuilder(payload(i));
+        while (payload.length() < ScanHistoryLog.MAX_PAYLOAD_SIZE - 100) {
+            payload.append((char) ('a' + payload.length() % 26));
+        }
+        return payload.toString();
+    }
+}
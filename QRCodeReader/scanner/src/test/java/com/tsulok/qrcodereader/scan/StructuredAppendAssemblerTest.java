@@ -0,0 +1,195 @@
+package com.tsulok.qrcodereader.scan;
+
+import net.sourceforge.zbar.Symbol;
+
+import org.junit.Test;
+
+import java.nio.charset.Charset;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class StructuredAppendAssemblerTest {
+
+    private static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+
+    private static final long TTL_MS = 30000;
+    private static final int MAX_SEQUENCES = 4;
+
+    @Test
+    public void joinsPartsInAnyOrder() {
+        StructuredAppendAssembler assembler = new StructuredAppendAssembler(TTL_MS, MAX_SEQUENCES);
+        String[] parts = {"Hello, ", "structured ", "append"};
+        int parity = parity("Hello, structured append");
+
+        assertNull(assembler.offer(part(parts, 2, parity)));
+        assertNull(assembler.offer(part(parts, 0, parity)));
+        DecodedSymbol whole = assembler.offer(part(parts, 1, parity));
+
+        assertNotNull(whole);
+        assertEquals("Hello, structured append", whole.getData());
+        assertArrayEquals("Hello, structured append".getBytes(ISO_8859_1), whole.getRawBytes());
+        assertFalse(whole.isStructuredAppend());
+        assertEquals(Symbol.QRCODE, whole.getType());
+        // The bounds of the last part
+        assertEquals(10, whole.getLeft());
+        assertEquals(1, assembler.getCompleted());
+        assertEquals(0, assembler.size());
+    }
+
+    @Test
+    public void ignoresDuplicateParts() {
+        StructuredAppendAssembler assembler = new StructuredAppendAssembler(TTL_MS, MAX_SEQUENCES);
+        String[] parts = {"abc", "def"};
+        int parity = parity("abcdef");
+
+        assertNull(assembler.offer(part(parts, 0, parity)));
+        assertNull(assembler.offer(part(parts, 0, parity)));
+        assertNull(assembler.offer(part(parts, 0, parity)));
+        DecodedSymbol whole = assembler.offer(part(parts, 1, parity));
+
+        assertNotNull(whole);
+        assertEquals("abcdef", whole.getData());
+        assertEquals(1, assembler.getCompleted());
+    }
+
+    @Test
+    public void restartsSequenceOnConflictingPart() {
+        StructuredAppendAssembler assembler = new StructuredAppendAssembler(TTL_MS, MAX_SEQUENCES);
+        // Two sequences of the same length and parity
+        String[] first = {"ab", "cd"};
+        String[] second = {"ba", "dc"};
+        int parity = parity("abcd");
+        assertEquals(parity, parity("badc"));
+
+        assertNull(assembler.offer(part(first, 0, parity)));
+        assertNull(assembler.offer(part(second, 0, parity)));
+        DecodedSymbol whole = assembler.offer(part(second, 1, parity));
+
+        assertNotNull(whole);
+        assertEquals("badc", whole.getData());
+    }
+
+    @Test
+    public void dropsSequenceWithWrongParity() {
+        StructuredAppendAssembler assembler = new StructuredAppendAssembler(TTL_MS, MAX_SEQUENCES);
+        String[] parts = {"abc", "def"};
+        int parity = parity("abcdef") ^ 0x01;
+
+        assertNull(assembler.offer(part(parts, 0, parity)));
+        assertNull(assembler.offer(part(parts, 1, parity)));
+
+        assertEquals(1, assembler.getParityErrors());
+        assertEquals(0, assembler.getCompleted());
+        assertEquals(0, assembler.size());
+    }
+
+    @Test
+    public void checksParityOnTextWithoutRawBytes() {
+        StructuredAppendAssembler assembler = new StructuredAppendAssembler(TTL_MS, MAX_SEQUENCES);
+        int parity = parity("12345ABC");
+
+        assertNull(assembler.offer(new DecodedSymbol(Symbol.QRCODE, "12345", 0, 0, 10, 10, null,
+                sequence(0, 2), parity)));
+        DecodedSymbol whole = assembler.offer(new DecodedSymbol(Symbol.QRCODE, "ABC", 0, 0, 10, 10, null,
+                sequence(1, 2), parity));
+
+        assertNotNull(whole);
+        assertEquals("12345ABC", whole.getData());
+        assertNull(whole.getRawBytes());
+    }
+
+    @Test
+    public void keepsSequencesOfDifferentParityApart() {
+        StructuredAppendAssembler assembler = new StructuredAppendAssembler(TTL_MS, MAX_SEQUENCES);
+        String[] first = {"one ", "two"};
+        String[] second = {"three ", "four"};
+        int firstParity = parity("one two");
+        int secondParity = parity("three four");
+
+        assertNull(assembler.offer(part(first, 0, firstParity)));
+        assertNull(assembler.offer(part(second, 1, secondParity)));
+        assertEquals(2, assembler.size());
+
+        assertEquals("three four", assembler.offer(part(second, 0, secondParity)).getData());
+        assertEquals("one two", assembler.offer(part(first, 1, firstParity)).getData());
+    }
+
+    @Test
+    public void evictsStaleSequences() throws InterruptedException {
+        StructuredAppendAssembler assembler = new StructuredAppendAssembler(50, MAX_SEQUENCES);
+        String[] parts = {"abc", "def"};
+        int parity = parity("abcdef");
+
+        assertNull(assembler.offer(part(parts, 0, parity)));
+        Thread.sleep(100);
+        // The first part is gone, the sequence starts over
+        assertNull(assembler.offer(part(parts, 1, parity)));
+
+        assertEquals(1, assembler.getEvictions());
+        assertEquals(1, assembler.size());
+        assertEquals(0, assembler.getCompleted());
+    }
+
+    @Test
+    public void evictsLeastRecentlySeenAboveLimit() {
+        StructuredAppendAssembler assembler = new StructuredAppendAssembler(TTL_MS, 2);
+        // Different parities, so they are different sequences
+        String[][] sequences = {{"a1", "a3"}, {"b1", "b5"}, {"c1", "c9"}};
+
+        for (String[] parts : sequences) {
+            assertNull(assembler.offer(part(parts, 0, parity(parts[0] + parts[1]))));
+        }
+
+        assertEquals(2, assembler.size());
+        assertEquals(1, assembler.getEvictions());
+        assertNull(assembler.offer(part(sequences[0], 1, parity("a1a3"))));
+        assertNotNull(assembler.offer(part(sequences[2], 1, parity("c1c9"))));
+    }
+
+    @Test
+    public void ignoresInvalidParts() {
+        StructuredAppendAssembler assembler = new StructuredAppendAssembler(TTL_MS, MAX_SEQUENCES);
+
+        assertNull(assembler.offer(new DecodedSymbol(Symbol.QRCODE, "plain", 0, 0, 10, 10)));
+        // Index 2 of a sequence of 2
+        assertNull(assembler.offer(new DecodedSymbol(Symbol.QRCODE, "abc", 0, 0, 10, 10, null,
+                (2 << 4) | 1, 0)));
+
+        assertEquals(0, assembler.size());
+    }
+
+    @Test
+    public void clearDropsSequences() {
+        StructuredAppendAssembler assembler = new StructuredAppendAssembler(TTL_MS, MAX_SEQUENCES);
+        String[] parts = {"abc", "def"};
+        int parity = parity("abcdef");
+
+        assertNull(assembler.offer(part(parts, 0, parity)));
+        assembler.clear();
+
+        assertEquals(0, assembler.size());
+        assertNull(assembler.offer(part(parts, 1, parity)));
+    }
+
+    private static DecodedSymbol part(String[] parts, int index, int parity) {
+        byte[] rawBytes = parts[index].getBytes(ISO_8859_1);
+        return new DecodedSymbol(Symbol.QRCODE, parts[index], 10 * index, 0, 10, 10, rawBytes,
+                sequence(index, parts.length), parity);
+    }
+
+    private static int sequence(int index, int length) {
+        return (index << 4) | (length - 1);
+    }
+
+    private static int parity(String data) {
+        int parity = 0;
+        for (byte b : data.getBytes(ISO_8859_1)) {
+            parity ^= b & 0xff;
+        }
+        return parity;
+    }
+}